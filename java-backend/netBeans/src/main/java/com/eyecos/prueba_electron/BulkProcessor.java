@@ -0,0 +1,511 @@
+package com.eyecos.prueba_electron;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.ImageDecoder.DecodedImage;
+
+/**
+ * Offline bulk mode of the CLI: segments every image in a directory tree or a
+ * file list and streams one result per image to an NDJSON or CSV file.
+ *
+ * Arguments (plus any of the single-image segmentation options):
+ *   --bulk=PATH        directory to walk for images, or a text file listing one
+ *                      image path per line (relative paths are resolved against
+ *                      the list's directory; blank lines and # comments are skipped)
+ *   --output=FILE      results file; a .csv name selects CSV, anything else NDJSON
+ *                      (default bulk-results.ndjson)
+ *   --threads=N        worker threads (default: one per core)
+ *   --memory-mb=N      budget for images in flight (default: a quarter of the heap)
+ *
+ * Images run on a work-stealing pool. Before an image is read, its estimated
+ * footprint (file bytes plus the decoded raster and its working copies) is taken
+ * from a semaphore sized to the memory budget and returned when the image is
+ * done, so a folder of huge photos slows the reader down instead of exhausting
+ * the heap.
+ *
+ * The results file is the checkpoint: every result is flushed as soon as it is
+ * written (cheap next to segmenting the image), and a rerun with the same output reads the files already listed there,
+ * drops a partially written last line and only processes the rest. Results are
+ * written in completion order. A throughput and latency summary goes to stderr
+ * and, as JSON, to stdout.
+ */
+public class BulkProcessor {
+
+    static final String DEFAULT_OUTPUT = "bulk-results.ndjson";
+
+    /** Decoded raster (4 bytes per pixel) plus grayscale, blurred and scaled working copies. */
+    private static final long WORKING_BYTES = 3L * 4 * ImageDecoder.DEFAULT_TARGET_SIZE
+            * ImageDecoder.DEFAULT_TARGET_SIZE;
+
+    /** Semaphore permits are KiB so that budgets above 2 GB still fit in an int. */
+    private static final int MEMORY_UNIT = 1024;
+
+    private static final Set<String> IMAGE_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "bmp", "gif", "tif", "tiff", "wbmp"));
+
+    private static final String[] CSV_COLUMNS = {
+            "file", "status", "message", "millis", "eyeCount", "eyeConfidence",
+            "pupilCenterX", "pupilCenterY", "pupilRadius", "irisCenterX", "irisCenterY", "irisRadius",
+            "searchCompleted"
+    };
+
+    /**
+     * One line of output. Circles are in source image pixels; for --locate-eyes they
+     * describe the strongest eye.
+     */
+    static class BulkRecord {
+        String file;
+        String status;
+        String message;
+        double millis;
+        int eyeCount;
+        Double eyeConfidence;
+        Double pupilCenterX;
+        Double pupilCenterY;
+        Double pupilRadius;
+        Double irisCenterX;
+        Double irisCenterY;
+        Double irisRadius;
+        Boolean searchCompleted;
+
+        BulkRecord(String file, String status, String message) {
+            this.file = file;
+            this.status = status;
+            this.message = message;
+        }
+
+        void setCircles(IrisData data, double confidence) {
+            eyeConfidence = confidence;
+            searchCompleted = data.searchCompleted;
+            if (!data.circlesFound) {
+                status = "DEADLINE_EXCEEDED";
+                message = "The deadline passed before any circle was found";
+                return;
+            }
+            pupilCenterX = data.precisePupilCenterX;
+            pupilCenterY = data.precisePupilCenterY;
+            pupilRadius = data.precisePupilRadius;
+            irisCenterX = data.preciseIrisCenterX;
+            irisCenterY = data.preciseIrisCenterY;
+            irisRadius = data.preciseIrisRadius;
+        }
+
+        String toCsv() {
+            Object[] values = {
+                    file, status, message, String.format(Locale.ROOT, "%.1f", millis), eyeCount, eyeConfidence,
+                    pupilCenterX, pupilCenterY, pupilRadius, irisCenterX, irisCenterY, irisRadius, searchCompleted
+            };
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                line.append(csvField(values[i]));
+            }
+            return line.toString();
+        }
+    }
+
+    /** Run settings taken from the command line. */
+    private static class Settings {
+        Path input;
+        Path output = Paths.get(DEFAULT_OUTPUT);
+        int threads = Runtime.getRuntime().availableProcessors();
+        long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+        IrisSegmentation.SegmentationOptions options;
+        int maxEyes;
+
+        boolean csv() {
+            return output.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv");
+        }
+    }
+
+    private final Settings settings;
+    private final Gson gson = new Gson();
+    private final Semaphore memory;
+
+    private Writer writer;
+    private final Map<String, Integer> statusCounts = new TreeMap<>();
+    private double[] latencies = new double[1024];
+    private int completed;
+
+    private BulkProcessor(Settings settings) {
+        this.settings = settings;
+        this.memory = new Semaphore(permits(settings.memoryBudget), true);
+    }
+
+    static boolean isBulk(String[] args) {
+        for (String arg : args) {
+            if (arg.startsWith("--bulk=")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs the bulk mode and returns the process exit code.
+     */
+    static int run(String[] args) {
+        try {
+            Settings settings = parseSettings(args);
+            new BulkProcessor(settings).process();
+            return 0;
+        } catch (Exception e) {
+            System.err.println("CLI Error: " + e.getClass().getName() + " - " + e.getMessage());
+            e.printStackTrace(System.err);
+            return 1;
+        }
+    }
+
+    private static Settings parseSettings(String[] args) {
+        Settings settings = new Settings();
+        List<String> segmentationArgs = new ArrayList<>();
+
+        for (String arg : args) {
+            if (arg.startsWith("--bulk=")) {
+                settings.input = Paths.get(arg.substring("--bulk=".length()));
+            } else if (arg.startsWith("--output=")) {
+                settings.output = Paths.get(arg.substring("--output=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                settings.threads = Integer.parseInt(arg.substring("--threads=".length()));
+                if (settings.threads < 1) {
+                    throw new IllegalArgumentException("--threads must be at least 1");
+                }
+            } else if (arg.startsWith("--memory-mb=")) {
+                settings.memoryBudget = Long.parseLong(arg.substring("--memory-mb=".length())) * 1024 * 1024;
+                if (settings.memoryBudget <= 0) {
+                    throw new IllegalArgumentException("--memory-mb must be positive");
+                }
+            } else {
+                segmentationArgs.add(arg);
+            }
+        }
+
+        String[] rest = segmentationArgs.toArray(new String[0]);
+        settings.options = IrisController.parseOptions(rest);
+        settings.maxEyes = IrisController.parseMaxEyes(rest);
+        return settings;
+    }
+
+    private void process() throws IOException, InterruptedException {
+        List<Path> files = listInput(settings.input);
+        Set<String> done = readCompleted(settings.output, settings.csv());
+        List<Path> pending = files.stream()
+                .filter(file -> !done.contains(file.toString()))
+                .collect(Collectors.toList());
+
+        System.err.println("CLI: Bulk run over " + files.size() + " images, " + done.size()
+                + " already in " + settings.output + ", " + pending.size() + " to process with "
+                + settings.threads + " threads and " + settings.memoryBudget / (1024 * 1024) + " MB in flight");
+
+        boolean fresh = !Files.exists(settings.output) || Files.size(settings.output) == 0;
+        writer = Files.newBufferedWriter(settings.output, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        if (fresh && settings.csv()) {
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write('\n');
+        }
+
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(settings.threads);
+        try {
+            for (Path file : pending) {
+                int cost = permits(estimateBytes(file));
+                memory.acquire(cost);
+                pool.execute(() -> {
+                    try {
+                        write(processFile(file));
+                    } finally {
+                        memory.release(cost);
+                    }
+                });
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        } finally {
+            pool.shutdownNow();
+            synchronized (this) {
+                writer.close();
+            }
+        }
+
+        printSummary(files.size(), done.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Decodes, checks and segments one file. Failures become records rather than
+     * exceptions so one bad file never stops the run.
+     */
+    private BulkRecord processFile(Path file) {
+        long start = System.nanoTime();
+        BulkRecord record;
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            IrisSegmentation.SegmentationOptions options = settings.options.copy();
+            DecodedImage decoded = ImageDecoder.decode(new ByteArrayInputStream(bytes),
+                    ImageDecoder.DEFAULT_TARGET_SIZE, ImageDecoder.DEFAULT_MAX_PIXELS,
+                    options.hints == null ? null : options.hints.crop);
+            record = decoded == null
+                    ? new BulkRecord(file.toString(), "DECODE_FAILED", "No image reader could decode the file")
+                    : segment(file, decoded, options);
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            record = new BulkRecord(file.toString(), "IMAGE_TOO_LARGE", e.getMessage());
+        } catch (ImageDecoder.InvalidRegionException e) {
+            record = new BulkRecord(file.toString(), "INVALID_OPTIONS", e.getMessage());
+        } catch (Exception e) {
+            record = new BulkRecord(file.toString(), "ERROR", e.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+        record.millis = (System.nanoTime() - start) / 1e6;
+        return record;
+    }
+
+    private BulkRecord segment(Path file, DecodedImage decoded, IrisSegmentation.SegmentationOptions options) {
+        options.hints = decoded.toDecodedHints(options.hints);
+
+        if (settings.maxEyes > 0) {
+            List<IrisPipeline.EyeResult> eyes = IrisPipeline.segmentLocatedEyes(decoded.image, settings.maxEyes,
+                    256, options);
+            if (eyes.isEmpty()) {
+                return new BulkRecord(file.toString(), "NOT_AN_EYE", "No eye regions were found in the image");
+            }
+            BulkRecord record = new BulkRecord(file.toString(), "OK", null);
+            record.eyeCount = eyes.size();
+            record.setCircles(decoded.toSourceCoordinates(eyes.get(0).irisData), eyes.get(0).confidence);
+            return record;
+        }
+
+        EyeDetector.EyeDetectionResult eyeDetection = EyeDetector.detectEye(decoded.image);
+        if (!eyeDetection.isEye) {
+            return new BulkRecord(file.toString(), "NOT_AN_EYE", eyeDetection.reason);
+        }
+        ImageQuality.QualityResult quality = ImageQuality.assess(decoded.image);
+        if (!quality.acceptable) {
+            return new BulkRecord(file.toString(), "LOW_QUALITY", quality.reason);
+        }
+
+        IrisData data = decoded.toSourceCoordinates(IrisSegmentation.segmentIris(decoded.image, 256, options));
+        BulkRecord record = new BulkRecord(file.toString(), "OK", null);
+        record.eyeCount = 1;
+        record.setCircles(data, eyeDetection.confidence);
+        return record;
+    }
+
+    private synchronized void write(BulkRecord record) {
+        try {
+            writer.write(settings.csv() ? record.toCsv() : gson.toJson(record));
+            writer.write('\n');
+            writer.flush();
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException("Could not write to " + settings.output, e);
+        }
+
+        statusCounts.merge(record.status, 1, Integer::sum);
+        if (completed == latencies.length) {
+            latencies = Arrays.copyOf(latencies, completed * 2);
+        }
+        latencies[completed++] = record.millis;
+        if (completed % 1000 == 0) {
+            System.err.println("CLI: " + completed + " images processed");
+        }
+    }
+
+    private void printSummary(int total, int skipped, double seconds) {
+        double[] sorted = Arrays.copyOf(latencies, completed);
+        Arrays.sort(sorted);
+        double sum = 0;
+        for (double latency : sorted) {
+            sum += latency;
+        }
+
+        Map<String, Object> summary = new TreeMap<>();
+        summary.put("total", total);
+        summary.put("skipped", skipped);
+        summary.put("processed", completed);
+        summary.put("statuses", statusCounts);
+        summary.put("seconds", seconds);
+        summary.put("imagesPerSecond", seconds > 0 ? completed / seconds : 0);
+        summary.put("meanMillis", completed > 0 ? sum / completed : 0);
+        summary.put("p50Millis", percentile(sorted, 0.50));
+        summary.put("p95Millis", percentile(sorted, 0.95));
+        summary.put("p99Millis", percentile(sorted, 0.99));
+        summary.put("maxMillis", completed > 0 ? sorted[completed - 1] : 0);
+
+        System.err.println(String.format(Locale.ROOT,
+                "CLI: Processed %d images in %.1f s (%.1f images/s); latency mean %.1f ms, p50 %.1f, p95 %.1f, "
+                        + "p99 %.1f, max %.1f; %s",
+                completed, seconds, summary.get("imagesPerSecond"), summary.get("meanMillis"),
+                summary.get("p50Millis"), summary.get("p95Millis"), summary.get("p99Millis"),
+                summary.get("maxMillis"), statusCounts));
+        System.out.println(gson.toJson(summary));
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private int permits(long bytes) {
+        long units = Math.max(1, (bytes + MEMORY_UNIT - 1) / MEMORY_UNIT);
+        long budget = Math.max(1, (settings.memoryBudget + MEMORY_UNIT - 1) / MEMORY_UNIT);
+        // A single image larger than the whole budget still runs, just on its own
+        return (int) Math.min(Math.min(units, budget), Integer.MAX_VALUE);
+    }
+
+    private static long estimateBytes(Path file) {
+        try {
+            return Files.size(file) + WORKING_BYTES;
+        } catch (IOException e) {
+            return WORKING_BYTES;
+        }
+    }
+
+    /**
+     * Image files under a directory (sorted, so reruns visit them in the same
+     * order), or the paths listed in a text file.
+     */
+    static List<Path> listInput(Path input) throws IOException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> walk = Files.walk(input)) {
+                return walk.filter(Files::isRegularFile)
+                        .filter(BulkProcessor::isImageFile)
+                        .sorted()
+                        .collect(Collectors.toList());
+            }
+        }
+        if (!Files.isRegularFile(input)) {
+            throw new IllegalArgumentException("Bulk input is neither a directory nor a file list: " + input);
+        }
+
+        Path base = input.toAbsolutePath().getParent();
+        List<Path> files = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    Path file = Paths.get(line);
+                    files.add(file.isAbsolute() || base == null ? file : base.resolve(file));
+                }
+            }
+        }
+        return files;
+    }
+
+    private static boolean isImageFile(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Files already recorded in a previous run's output. A last line cut off by a
+     * crash is removed so the file can be appended to.
+     */
+    static Set<String> readCompleted(Path output, boolean csv) throws IOException {
+        Set<String> done = new HashSet<>();
+        if (!Files.exists(output)) {
+            return done;
+        }
+
+        try (FileChannel channel = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = channel.size();
+            ByteBuffer one = ByteBuffer.allocate(1);
+            while (end > 0) {
+                one.clear();
+                channel.read(one, end - 1);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+                end--;
+            }
+            if (end < channel.size()) {
+                System.err.println("CLI: Dropping " + (channel.size() - end) + " bytes of an incomplete result line");
+                channel.truncate(end);
+            }
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(output, StandardCharsets.UTF_8)) {
+            String line;
+            boolean header = csv;
+            while ((line = reader.readLine()) != null) {
+                if (header) {
+                    header = false;
+                    continue;
+                }
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (csv) {
+                    done.add(firstCsvField(line));
+                } else {
+                    JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                    done.add(record.get("file").getAsString());
+                }
+            }
+        }
+        return done;
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"").replace('\n', ' ').replace('\r', ' ') + '"';
+    }
+
+    private static String firstCsvField(String line) {
+        if (!line.startsWith("\"")) {
+            int comma = line.indexOf(',');
+            return comma < 0 ? line : line.substring(0, comma);
+        }
+        StringBuilder field = new StringBuilder();
+        for (int i = 1; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    break;
+                }
+            } else {
+                field.append(c);
+            }
+        }
+        return field.toString();
+    }
+}
@@ -0,0 +1,162 @@
+package com.eyecos.prueba_electron;
+
+import java.util.Arrays;
+
+/**
+ * Coarse-to-fine circle search used for time-budgeted and pruned searches.
+ *
+ * Candidates (cx, cy, r) are visited in passes of decreasing stride (8, 4, 2, 1),
+ * each pass only scoring candidates that no earlier pass has seen. Inside a pass,
+ * centers closest to the current best are scored first, so the answer improves
+ * quickly and the search can stop at any time with the best circle found so far.
+ *
+ * With pruning enabled each candidate is scored against the best score so far and
+ * abandoned once its partial sum shows it cannot win; visiting likely winners
+ * first makes that bound bite early.
+ *
+ * Ties are resolved by the exhaustive scan order, so a search that runs to
+ * completion returns exactly what the exhaustive Daugman loop would.
+ */
+final class CandidateSearch {
+
+    static final long NO_DEADLINE = SegmentationEngine.NO_DEADLINE;
+
+    private static final int COARSE_STEP = 8;
+
+    static final class Result {
+        int centerX;
+        int centerY;
+        int radius;
+        double score = -1;
+        long evaluated;
+        long pruned;
+        long total;
+        boolean completed;
+    }
+
+    private CandidateSearch() {}
+
+    static long candidateCount(int minX, int maxX, int minY, int maxY, int minRadius, int maxRadius) {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxRadius - minRadius + 1);
+    }
+
+    /**
+     * Searches the window until every candidate is scored or {@code deadlineNanos}
+     * (a {@link System#nanoTime()} value, or {@link #NO_DEADLINE}) passes.
+     */
+    static Result search(GradientField gradients, int minX, int maxX, int minY, int maxY,
+                         int minRadius, int maxRadius, long deadlineNanos, boolean prune) {
+        return search(gradients, minX, maxX, minY, maxY, minRadius, maxRadius, deadlineNanos, prune, 1);
+    }
+
+    /**
+     * Runs only the stride-8 and stride-4 passes over the window, about one candidate
+     * in 60: every circle is then within two pixels of a scored one, close enough
+     * for its score to show roughly where and how strong the best circle is.
+     */
+    static Result coarseSearch(GradientField gradients, int minX, int maxX, int minY, int maxY,
+                               int minRadius, int maxRadius, long deadlineNanos, boolean prune) {
+        return search(gradients, minX, maxX, minY, maxY, minRadius, maxRadius, deadlineNanos, prune,
+                      COARSE_STEP / 2);
+    }
+
+    private static Result search(GradientField gradients, int minX, int maxX, int minY, int maxY,
+                                 int minRadius, int maxRadius, long deadlineNanos, boolean prune,
+                                 int finestStep) {
+        int spanX = maxX - minX + 1;
+        int spanR = maxRadius - minRadius + 1;
+
+        Result result = new Result();
+        result.centerX = (minX + maxX) / 2;
+        result.centerY = (minY + maxY) / 2;
+        result.radius = minRadius;
+        result.total = candidateCount(minX, maxX, minY, maxY, minRadius, maxRadius);
+        long bestIndex = Long.MAX_VALUE;
+
+        for (int step = COARSE_STEP; step >= finestStep; step /= 2) {
+            boolean firstPass = step == COARSE_STEP;
+            long[] centers = orderedCenters(minX, maxX, minY, maxY, step,
+                                            result.centerX, result.centerY);
+            int[] radii = orderedRadii(minRadius, maxRadius, step, result.radius);
+
+            for (long key : centers) {
+                if (deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+                    return result;
+                }
+
+                int packed = (int) key;
+                int cx = minX + (packed & 0xFFFF);
+                int cy = minY + (packed >>> 16);
+                boolean centerSeen = !firstPass
+                        && (cx - minX) % (2 * step) == 0
+                        && (cy - minY) % (2 * step) == 0;
+
+                for (int r : radii) {
+                    if (centerSeen && (r - minRadius) % (2 * step) == 0) {
+                        continue;
+                    }
+
+                    double score = IrisSegmentation.calculateBoundedScore(gradients, cx, cy, r,
+                            prune ? result.score : 0);
+                    long index = ((long) (cy - minY) * spanX + (cx - minX)) * spanR + (r - minRadius);
+                    result.evaluated++;
+                    if (score == Double.NEGATIVE_INFINITY) {
+                        result.pruned++;
+                        continue;
+                    }
+
+                    if (score > result.score || (score == result.score && index < bestIndex)) {
+                        result.score = score;
+                        result.centerX = cx;
+                        result.centerY = cy;
+                        result.radius = r;
+                        bestIndex = index;
+                    }
+                }
+            }
+        }
+
+        result.completed = true;
+        return result;
+    }
+
+    /**
+     * Centers on the given stride, nearest to (bestX, bestY) first. Each entry keeps the
+     * squared distance in the high word and the packed (dy << 16 | dx) offset in the low word.
+     */
+    private static long[] orderedCenters(int minX, int maxX, int minY, int maxY, int step,
+                                         int bestX, int bestY) {
+        int countX = (maxX - minX) / step + 1;
+        int countY = (maxY - minY) / step + 1;
+        long[] keys = new long[countX * countY];
+
+        int i = 0;
+        for (int dy = 0; dy <= maxY - minY; dy += step) {
+            for (int dx = 0; dx <= maxX - minX; dx += step) {
+                long ddx = minX + dx - bestX;
+                long ddy = minY + dy - bestY;
+                keys[i++] = ((ddx * ddx + ddy * ddy) << 32) | ((long) dy << 16) | dx;
+            }
+        }
+
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /** Radii on the given stride, ordered outward from the current best radius. */
+    private static int[] orderedRadii(int minRadius, int maxRadius, int step, int bestRadius) {
+        int count = (maxRadius - minRadius) / step + 1;
+        long[] keys = new long[count];
+        for (int i = 0; i < count; i++) {
+            int r = minRadius + i * step;
+            keys[i] = ((long) Math.abs(r - bestRadius) << 32) | r;
+        }
+        Arrays.sort(keys);
+
+        int[] radii = new int[count];
+        for (int i = 0; i < count; i++) {
+            radii[i] = (int) keys[i];
+        }
+        return radii;
+    }
+}
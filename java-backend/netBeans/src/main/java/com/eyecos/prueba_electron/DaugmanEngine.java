@@ -0,0 +1,203 @@
+package com.eyecos.prueba_electron;
+
+import com.eyecos.prueba_electron.IrisSegmentation.SearchMode;
+import com.eyecos.prueba_electron.IrisSegmentation.SearchRegion;
+import com.eyecos.prueba_electron.IrisSegmentation.SegmentationOptions;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Daugman integro-differential search: every candidate circle in the region is
+ * scored by its mean gradient magnitude. {@link SegmentationOptions#searchMode}
+ * picks how the candidates are visited (exhaustive, pruned or FFT), and a
+ * deadline switches the exhaustive scan to the coarse-to-fine anytime order.
+ *
+ * With {@link SegmentationOptions#seedPupil} the exhaustive and pruned pupil
+ * searches only cover small neighborhoods around the darkest blobs found by
+ * {@link PupilSeeder}, plus the best circle of a coarse pass over the whole
+ * window. The whole window is searched instead when the winner sits on a
+ * neighborhood edge, since the true optimum is probably outside it, or when the
+ * coarse winner outscores every seed, since then the seeds were shadows or lashes
+ * rather than the pupil. Seeding is off by default.
+ */
+public class DaugmanEngine implements SegmentationEngine {
+
+    private static final int RADIUS_SEARCH_STEP = 1;
+    private static final int POINT_SEARCH_STEP = 1;
+
+    /** Seeds whose neighborhoods are searched before falling back to the whole window. */
+    private static final int MAX_PUPIL_SEEDS = 3;
+
+    @Override
+    public String name() {
+        return "daugman";
+    }
+
+    @Override
+    public Circles findCircles(byte[] blurredPixels, int width, SearchRegion region,
+                               SegmentationOptions options, long deadlineNanos) {
+        boolean anytime = deadlineNanos != NO_DEADLINE;
+
+        boolean seed = options.seedPupil && options.searchMode != SearchMode.FFT;
+
+        if (!anytime && options.searchMode == SearchMode.EXHAUSTIVE && !seed) {
+            return new Circles(
+                    daugmanOperator(blurredPixels, region, region.pupilMinRadius, region.pupilMaxRadius),
+                    daugmanOperator(blurredPixels, region, region.irisMinRadius, region.irisMaxRadius));
+        }
+
+        if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+            return Circles.notFound(0);
+        }
+        GradientField gradients = new GradientField(blurredPixels, width);
+        boolean prune = options.searchMode == SearchMode.PRUNED;
+
+        CandidateSearch.Result pupil;
+        CandidateSearch.Result iris;
+        if (options.searchMode == SearchMode.FFT) {
+            // One pass over the radii serves both circles, so it gets the whole budget
+            CandidateSearch.Result[] both = RingConvolutionSearch.search(gradients,
+                    region.minX, region.maxX, region.minY, region.maxY,
+                    new int[][] {
+                            { region.pupilMinRadius, region.pupilMaxRadius },
+                            { region.irisMinRadius, region.irisMaxRadius }
+                    }, deadlineNanos);
+            pupil = both[0];
+            iris = both[1];
+        } else {
+            long pupilDeadline = NO_DEADLINE;
+            if (anytime) {
+                long pupilTotal = region.candidateCount(region.pupilMinRadius, region.pupilMaxRadius);
+                long irisTotal = region.candidateCount(region.irisMinRadius, region.irisMaxRadius);
+
+                // Give the pupil its share of whatever budget is left after preprocessing;
+                // the iris search then inherits anything the pupil search did not use.
+                long now = System.nanoTime();
+                pupilDeadline = now + Math.max(0, deadlineNanos - now) * pupilTotal / (pupilTotal + irisTotal);
+            }
+
+            pupil = seed
+                    ? seededPupilSearch(blurredPixels, gradients, region, pupilDeadline, prune)
+                    : CandidateSearch.search(gradients, region.minX, region.maxX, region.minY, region.maxY,
+                            region.pupilMinRadius, region.pupilMaxRadius, pupilDeadline, prune);
+            iris = CandidateSearch.search(gradients, region.minX, region.maxX, region.minY, region.maxY,
+                    region.irisMinRadius, region.irisMaxRadius, deadlineNanos, prune);
+        }
+
+        Circles circles = new Circles(
+                new int[] { pupil.centerX, pupil.centerY, pupil.radius },
+                new int[] { iris.centerX, iris.centerY, iris.radius });
+        circles.completed = pupil.completed && iris.completed;
+        circles.coverage = (double) (pupil.evaluated + iris.evaluated) / (pupil.total + iris.total);
+        circles.found = pupil.evaluated > 0 && iris.evaluated > 0;
+        return circles;
+    }
+
+    /**
+     * Searches the neighborhood of each pupil seed and keeps the best circle, or
+     * searches the whole window when there are no seeds, the winner lies on the
+     * edge of its neighborhood, or the neighborhood of the coarse pass's best
+     * circle holds a better one than any seed's.
+     */
+    private static CandidateSearch.Result seededPupilSearch(byte[] pixels, GradientField gradients,
+                                                            SearchRegion region, long deadlineNanos,
+                                                            boolean prune) {
+        List<PupilSeeder.Seed> seeds = PupilSeeder.findSeeds(pixels, gradients.width, region, MAX_PUPIL_SEEDS);
+        int reach = Math.max(2, region.pupilMinRadius / 2);
+
+        List<int[]> centers = new ArrayList<>();
+        for (PupilSeeder.Seed seed : seeds) {
+            centers.add(new int[] { seed.centerX, seed.centerY });
+        }
+
+        long evaluated = 0;
+        long total = 0;
+        boolean completed = true;
+
+        // The coarse winner is checked like a seed unless a seed already covers it
+        int coarseIndex = -1;
+        if (!seeds.isEmpty()) {
+            CandidateSearch.Result coarse = CandidateSearch.coarseSearch(gradients,
+                    region.minX, region.maxX, region.minY, region.maxY,
+                    region.pupilMinRadius, region.pupilMaxRadius, deadlineNanos, prune);
+            evaluated += coarse.evaluated;
+            total += coarse.evaluated;
+            completed = coarse.completed;
+
+            boolean covered = false;
+            for (int[] center : centers) {
+                covered |= Math.abs(coarse.centerX - center[0]) <= reach
+                        && Math.abs(coarse.centerY - center[1]) <= reach;
+            }
+            if (!covered) {
+                coarseIndex = centers.size();
+                centers.add(new int[] { coarse.centerX, coarse.centerY });
+            }
+        }
+
+        CandidateSearch.Result best = null;
+        boolean onEdge = false;
+        boolean seedsLost = false;
+
+        for (int i = 0; i < centers.size(); i++) {
+            int[] center = centers.get(i);
+            int minX = Math.max(region.minX, center[0] - reach);
+            int maxX = Math.min(region.maxX, center[0] + reach);
+            int minY = Math.max(region.minY, center[1] - reach);
+            int maxY = Math.min(region.maxY, center[1] + reach);
+
+            CandidateSearch.Result result = CandidateSearch.search(gradients, minX, maxX, minY, maxY,
+                    region.pupilMinRadius, region.pupilMaxRadius, deadlineNanos, prune);
+            evaluated += result.evaluated;
+            total += result.total;
+            completed &= result.completed;
+
+            if (best == null || result.score > best.score) {
+                best = result;
+                seedsLost = i == coarseIndex;
+                onEdge = (result.centerX == minX && minX > region.minX)
+                        || (result.centerX == maxX && maxX < region.maxX)
+                        || (result.centerY == minY && minY > region.minY)
+                        || (result.centerY == maxY && maxY < region.maxY);
+            }
+        }
+
+        if (best == null || (completed && (onEdge || seedsLost))) {
+            CandidateSearch.Result full = CandidateSearch.search(gradients,
+                    region.minX, region.maxX, region.minY, region.maxY,
+                    region.pupilMinRadius, region.pupilMaxRadius, deadlineNanos, prune);
+            full.evaluated += evaluated;
+            full.total += total;
+            return full;
+        }
+
+        best.evaluated = evaluated;
+        best.total = total;
+        best.completed = completed;
+        return best;
+    }
+
+    private static int[] daugmanOperator(byte[] pixels, SearchRegion region, int minRadius, int maxRadius) {
+        int bestCenterX = (region.minX + region.maxX) / 2;
+        int bestCenterY = (region.minY + region.maxY) / 2;
+        int bestRadius = minRadius;
+        double maxScore = -1;
+
+        for (int cy = region.minY; cy <= region.maxY; cy += POINT_SEARCH_STEP) {
+            for (int cx = region.minX; cx <= region.maxX; cx += POINT_SEARCH_STEP) {
+                for (int r = minRadius; r <= maxRadius; r += RADIUS_SEARCH_STEP) {
+                    double score = IrisSegmentation.calculateDaugmanScore(pixels, cx, cy, r);
+
+                    if (score > maxScore) {
+                        maxScore = score;
+                        bestCenterX = cx;
+                        bestCenterY = cy;
+                        bestRadius = r;
+                    }
+                }
+            }
+        }
+
+        return new int[] { bestCenterX, bestCenterY, bestRadius };
+    }
+}
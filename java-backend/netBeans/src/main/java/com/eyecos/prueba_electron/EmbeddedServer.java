@@ -0,0 +1,490 @@
+package com.eyecos.prueba_electron;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.eyecos.prueba_electron.IrisController.ErrorResponse;
+import com.eyecos.prueba_electron.IrisController.IrisDataWithConfidence;
+import com.eyecos.prueba_electron.IrisController.MultiEyeResult;
+import com.eyecos.prueba_electron.IrisController.QualityErrorResponse;
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.ImageDecoder.DecodedImage;
+
+/**
+ * Fast-starting alternative to {@link IrisWebController} built on the JDK's own
+ * HTTP server, with no Spring or servlet container on the class path. It serves
+ * /api/health, /api/metrics, /api/process-base64 and /api/process-file with the
+ * same parameters and response JSON as the Spring server (template gallery and
+ * overlay endpoints stay Spring-only).
+ *
+ * Usage (from target/):
+ *   java -XX:SharedArchiveFile=iris-embedded.jsa -jar prueba_electron-1.0.0-embedded.jar
+ *        [--port=N] [--threads=N] [--no-warmup] [--warmup-only]
+ *
+ * As soon as the port is open, a background thread runs one synthetic eye
+ * through the request path (encode, decode, checks, segmentation, JSON) so that
+ * class loading and the first JIT compilations of the hot loops happen while the
+ * app is still idle rather than on its first real request. Warming up before
+ * opening the port would delay /api/health by the full warm-up time.
+ *
+ * --warmup-only runs the warm-up in the foreground and exits. The opt-in build
+ * profile (mvn package -Pcds) uses it to record the loaded classes into a
+ * class-data-sharing archive (iris-embedded.jsa next to the jar), which takes
+ * most class loading off the startup path. Without the archive, drop the
+ * -XX:SharedArchiveFile option. Launch from the directory holding both files, as above. The
+ * archive only matches the JDK build and jar location it was created with;
+ * anywhere else the JVM silently starts without it.
+ */
+public class EmbeddedServer {
+
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_MAX_EYES = 2;
+    private static final int WARMUP_SIZE = 320;
+
+    /** Largest request body accepted; larger uploads get 413 before being read. */
+    private static final int MAX_BODY_BYTES = 64 * 1024 * 1024;
+
+    private static final Set<String> ALLOWED_ORIGINS = new HashSet<>(Arrays.asList(
+            "http://localhost:3000", "http://127.0.0.1:3000", "file://"));
+
+    /** Body of POST /api/process-base64, as sent to the Spring server. */
+    static class ImageRequest {
+        String imageData;
+        Long deadlineMs;
+        String searchMode;
+        String engine;
+        Boolean locateEyes;
+        Integer maxEyes;
+        SearchHintsRequest hints;
+    }
+
+    /** Status code and response object of one request. */
+    private static class Reply {
+        final int status;
+        final Object body;
+
+        Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private final Gson gson = new Gson();
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean warmup = true;
+        boolean warmupOnly = false;
+
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.equals("--no-warmup")) {
+                warmup = false;
+            } else if (arg.equals("--warmup-only")) {
+                warmupOnly = true;
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        EmbeddedServer embedded = new EmbeddedServer();
+        if (warmupOnly) {
+            // Also brings up the HTTP server classes so they land in the class list
+            HttpServer server = embedded.start(0, 1);
+            embedded.warmUp();
+            server.stop(0);
+            System.exit(0);
+        }
+
+        embedded.start(port, threads);
+        long bootMillis = ProcessHandle.current().info().startInstant()
+                .map(started -> Duration.between(started, Instant.now()).toMillis())
+                .orElse(-1L);
+        System.out.println("Iris Segmentation Embedded Server started on http://localhost:" + port
+                         + (bootMillis >= 0 ? " in " + bootMillis + " ms" : ""));
+
+        if (warmup) {
+            Thread thread = new Thread(() -> {
+                try {
+                    long start = System.nanoTime();
+                    embedded.warmUp();
+                    System.out.println("Warm-up finished in "
+                                     + String.format("%.0f", (System.nanoTime() - start) / 1e6) + " ms");
+                } catch (Exception e) {
+                    System.err.println("Warm-up failed: " + e.getMessage());
+                }
+            }, "iris-warmup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            thread.start();
+        }
+    }
+
+    HttpServer start(int port, int threads) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(Executors.newFixedThreadPool(Math.max(1, threads)));
+        server.createContext("/", this::handle);
+        server.start();
+        return server;
+    }
+
+    /**
+     * Runs one synthetic eye through the same decode, check and segment path as a
+     * request, including JSON serialization.
+     */
+    void warmUp() throws IOException {
+        SyntheticEye.Sample sample = SyntheticEye.render(WARMUP_SIZE, 1);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(sample.image, "jpeg", jpeg);
+
+        ImageRequest request = new ImageRequest();
+        request.imageData = "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(jpeg.toByteArray());
+        Reply reply = processBase64(gson.toJson(request).getBytes(StandardCharsets.UTF_8));
+        toJson(reply.body);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+            String path = exchange.getRequestURI().getPath();
+            addCorsHeaders(exchange);
+
+            if (method.equals("OPTIONS")) {
+                exchange.getResponseHeaders().set("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
+                String requested = exchange.getRequestHeaders().getFirst("Access-Control-Request-Headers");
+                if (requested != null) {
+                    exchange.getResponseHeaders().set("Access-Control-Allow-Headers", requested);
+                }
+                exchange.getResponseHeaders().set("Access-Control-Max-Age", "3600");
+                exchange.sendResponseHeaders(204, -1);
+                return;
+            }
+
+            switch (path) {
+                case "/api/health":
+                    if (requireMethod(exchange, method, "GET")) {
+                        sendText(exchange, 200, "Iris Segmentation Server is running!");
+                    }
+                    break;
+                case "/api/metrics":
+                    if (requireMethod(exchange, method, "GET")) {
+                        send(exchange, new Reply(200, Metrics.snapshot()));
+                    }
+                    break;
+                case "/api/process-base64":
+                    if (requireMethod(exchange, method, "POST")) {
+                        byte[] body = readBody(exchange);
+                        if (body != null) {
+                            send(exchange, processBase64(body));
+                        }
+                    }
+                    break;
+                case "/api/process-file":
+                    if (requireMethod(exchange, method, "POST")) {
+                        byte[] body = readBody(exchange);
+                        if (body != null) {
+                            send(exchange, processFile(exchange, body));
+                        }
+                    }
+                    break;
+                default:
+                    send(exchange, error(404, "NOT_FOUND", "No endpoint at " + path));
+            }
+        } catch (Exception e) {
+            System.err.println("Error handling request: " + e.getMessage());
+            e.printStackTrace();
+            send(exchange, error(500, "PROCESSING_ERROR", "Error processing image: " + e.getMessage()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Reply processBase64(byte[] body) throws IOException {
+        ImageRequest request;
+        try {
+            request = gson.fromJson(new String(body, StandardCharsets.UTF_8), ImageRequest.class);
+        } catch (JsonParseException e) {
+            return error(400, "INVALID_REQUEST", "Request body is not valid JSON: " + e.getMessage());
+        }
+        if (request == null || request.imageData == null || request.imageData.trim().isEmpty()) {
+            return error(400, "MISSING_DATA", "Image data is required");
+        }
+
+        IrisSegmentation.SegmentationOptions options;
+        IrisSegmentation.SearchHints hints;
+        try {
+            options = segmentationOptions(request.deadlineMs, request.searchMode, request.engine);
+            hints = request.hints == null ? null : request.hints.toSearchHints();
+        } catch (IllegalArgumentException e) {
+            return error(400, "INVALID_OPTIONS", e.getMessage());
+        }
+
+        String base64Data = request.imageData;
+        if (base64Data.startsWith("data:image")) {
+            String[] parts = base64Data.split(",");
+            if (parts.length < 2) {
+                return error(400, "INVALID_FORMAT", "Invalid base64 image format");
+            }
+            base64Data = parts[1];
+        }
+
+        byte[] imageBytes;
+        try {
+            imageBytes = Base64.getDecoder().decode(base64Data);
+        } catch (IllegalArgumentException e) {
+            return error(400, "DECODE_FAILED", "Failed to decode image from base64 data");
+        }
+        return process(new ByteArrayInputStream(imageBytes), options, hints, request.locateEyes, request.maxEyes,
+                "DECODE_FAILED", "Failed to decode image from base64 data");
+    }
+
+    private Reply processFile(HttpExchange exchange, byte[] body) throws IOException {
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return error(400, "NO_FILE", "Expected a multipart/form-data upload");
+        }
+
+        MultipartForm form;
+        try {
+            form = MultipartForm.parse(body, contentType);
+        } catch (IllegalArgumentException e) {
+            return error(400, "INVALID_REQUEST", e.getMessage());
+        }
+        form.addQuery(exchange.getRequestURI().getRawQuery());
+
+        MultipartForm.FilePart file = form.files.get("image");
+        if (file == null || file.length == 0) {
+            return error(400, "NO_FILE", "No file uploaded");
+        }
+        if (file.contentType == null || !file.contentType.startsWith("image/")) {
+            return error(400, "NOT_IMAGE", "File must be an image");
+        }
+
+        IrisSegmentation.SegmentationOptions options;
+        IrisSegmentation.SearchHints hints;
+        Boolean locateEyes;
+        Integer maxEyes;
+        try {
+            Map<String, String> fields = form.fields;
+            options = segmentationOptions(longField(fields, "deadlineMs"), fields.get("searchMode"),
+                                          fields.get("engine"));
+            hints = hintsFromFields(fields).toSearchHints();
+            locateEyes = booleanField(fields, "locateEyes");
+            maxEyes = fields.containsKey("maxEyes") ? Integer.valueOf(fields.get("maxEyes").trim()) : null;
+        } catch (IllegalArgumentException e) {
+            return error(400, "INVALID_OPTIONS", e.getMessage());
+        }
+
+        System.out.println("Received file upload: " + file.filename + " (" + file.length + " bytes, "
+                         + file.contentType + ")");
+        return process(file.openStream(), options, hints, locateEyes, maxEyes,
+                "READ_FAILED", "Failed to read image file");
+    }
+
+    /**
+     * Decode, eye check, quality check and segmentation, answering exactly as the
+     * Spring endpoints do.
+     */
+    private Reply process(InputStream input, IrisSegmentation.SegmentationOptions options,
+                          IrisSegmentation.SearchHints hints, Boolean locateEyes, Integer maxEyes,
+                          String decodeErrorCode, String decodeErrorMessage) throws IOException {
+        DecodedImage decoded;
+        try {
+            decoded = ImageDecoder.decode(input, ImageDecoder.DEFAULT_TARGET_SIZE, ImageDecoder.DEFAULT_MAX_PIXELS,
+                                          hints == null ? null : hints.crop);
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            return error(413, "IMAGE_TOO_LARGE", e.getMessage());
+        } catch (ImageDecoder.InvalidRegionException e) {
+            return error(400, "INVALID_OPTIONS", e.getMessage());
+        }
+        if (decoded == null) {
+            return error(400, decodeErrorCode, decodeErrorMessage);
+        }
+        options.hints = decoded.toDecodedHints(hints);
+
+        if (Boolean.TRUE.equals(locateEyes)) {
+            int limit = maxEyes != null && maxEyes > 0 ? maxEyes : DEFAULT_MAX_EYES;
+            List<IrisPipeline.EyeResult> eyes = IrisPipeline.segmentLocatedEyes(decoded.image, limit, 256, options);
+            if (eyes.isEmpty()) {
+                return new Reply(200, new ErrorResponse("NOT_AN_EYE", "No eye regions were found in the image"));
+            }
+            List<IrisDataWithConfidence> results = new ArrayList<>();
+            for (IrisPipeline.EyeResult eye : eyes) {
+                results.add(new IrisDataWithConfidence(decoded.toSourceCoordinates(eye.irisData), eye.confidence));
+            }
+            return new Reply(200, new MultiEyeResult(results));
+        }
+
+        EyeDetector.EyeDetectionResult eyeDetection = EyeDetector.detectEye(decoded.image);
+        if (!eyeDetection.isEye) {
+            return new Reply(200, new ErrorResponse("NOT_AN_EYE",
+                    "Image does not appear to contain an eye. " + eyeDetection.reason));
+        }
+        ImageQuality.QualityResult quality = ImageQuality.assess(decoded.image);
+        if (!quality.acceptable) {
+            return new Reply(200, new QualityErrorResponse(quality));
+        }
+
+        IrisData irisData = decoded.toSourceCoordinates(IrisSegmentation.segmentIris(decoded.image, 256, options));
+        return new Reply(200, new IrisDataWithConfidence(irisData, eyeDetection.confidence));
+    }
+
+    private static IrisSegmentation.SegmentationOptions segmentationOptions(Long deadlineMs, String searchMode,
+                                                                            String engine) {
+        IrisSegmentation.SegmentationOptions options = new IrisSegmentation.SegmentationOptions();
+        if (deadlineMs != null) {
+            options.deadlineMillis = deadlineMs;
+        }
+        if (searchMode != null && !searchMode.isEmpty()) {
+            options.searchMode = IrisSegmentation.SearchMode.parse(searchMode);
+        }
+        if (engine != null && !engine.isEmpty()) {
+            options.engine = SegmentationEngine.forName(engine);
+        }
+        return options;
+    }
+
+    private static SearchHintsRequest hintsFromFields(Map<String, String> fields) {
+        SearchHintsRequest hints = new SearchHintsRequest();
+        hints.setCropX(intField(fields, "cropX"));
+        hints.setCropY(intField(fields, "cropY"));
+        hints.setCropWidth(intField(fields, "cropWidth"));
+        hints.setCropHeight(intField(fields, "cropHeight"));
+        hints.setPupilX(doubleField(fields, "pupilX"));
+        hints.setPupilY(doubleField(fields, "pupilY"));
+        hints.setCenterTolerance(doubleField(fields, "centerTolerance"));
+        hints.setPupilMinRadius(doubleField(fields, "pupilMinRadius"));
+        hints.setPupilMaxRadius(doubleField(fields, "pupilMaxRadius"));
+        hints.setIrisMinRadius(doubleField(fields, "irisMinRadius"));
+        hints.setIrisMaxRadius(doubleField(fields, "irisMaxRadius"));
+        return hints;
+    }
+
+    private static Integer intField(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null || value.trim().isEmpty() ? null : Integer.valueOf(value.trim());
+    }
+
+    private static Long longField(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null || value.trim().isEmpty() ? null : Long.valueOf(value.trim());
+    }
+
+    private static Double doubleField(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        return value == null || value.trim().isEmpty() ? null : Double.valueOf(value.trim());
+    }
+
+    /** Accepts the same spellings as Spring's request parameter binding. */
+    private static Boolean booleanField(Map<String, String> fields, String name) {
+        String value = fields.get(name);
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true": case "on": case "yes": case "1":
+                return Boolean.TRUE;
+            case "false": case "off": case "no": case "0":
+                return Boolean.FALSE;
+            default:
+                throw new IllegalArgumentException("Invalid boolean for " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Reads the request body, or answers 413 and returns null when it is over
+     * {@link #MAX_BODY_BYTES}.
+     */
+    private byte[] readBody(HttpExchange exchange) throws IOException {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null && Long.parseLong(length.trim()) > MAX_BODY_BYTES) {
+            send(exchange, error(413, "IMAGE_TOO_LARGE", "Request body is larger than " + MAX_BODY_BYTES + " bytes"));
+            return null;
+        }
+        try (InputStream input = exchange.getRequestBody()) {
+            byte[] body = input.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                send(exchange, error(413, "IMAGE_TOO_LARGE", "Request body is larger than " + MAX_BODY_BYTES
+                        + " bytes"));
+                return null;
+            }
+            return body;
+        }
+    }
+
+    private boolean requireMethod(HttpExchange exchange, String method, String expected) throws IOException {
+        if (method.equals(expected)) {
+            return true;
+        }
+        exchange.getResponseHeaders().set("Allow", expected);
+        send(exchange, error(405, "METHOD_NOT_ALLOWED", "Use " + expected));
+        return false;
+    }
+
+    private void addCorsHeaders(HttpExchange exchange) {
+        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        if (origin != null && ALLOWED_ORIGINS.contains(origin)) {
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Access-Control-Allow-Origin", origin);
+            headers.set("Access-Control-Allow-Credentials", "true");
+            headers.add("Vary", "Origin");
+        }
+    }
+
+    private static Reply error(int status, String errorCode, String message) {
+        return new Reply(status, new ErrorResponse(errorCode, message));
+    }
+
+    /** Spring's error responses also carry the time they were created. */
+    private String toJson(Object body) {
+        JsonElement json = gson.toJsonTree(body);
+        if (body instanceof ErrorResponse) {
+            json.getAsJsonObject().addProperty("timestamp", System.currentTimeMillis());
+        }
+        return gson.toJson(json);
+    }
+
+    private void send(HttpExchange exchange, Reply reply) throws IOException {
+        byte[] bytes = toJson(reply.body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(reply.status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain;charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+}
@@ -196,57 +196,28 @@ public class EyeDetector {
         // Threshold for dark pixels
         int darkThreshold = 50;
         
-        // Find connected dark regions using flood fill approach
-        boolean[] visited = new boolean[pixels.length];
-        int largestDarkRegion = 0;
-        
-        for (int y = height / 4; y < 3 * height / 4; y++) {
-            for (int x = width / 4; x < 3 * width / 4; x++) {
-                int index = y * width + x;
-                
-                if (!visited[index] && (pixels[index] & 0xFF) < darkThreshold) {
-                    // Found a dark pixel, flood fill to find region size
-                    int regionSize = floodFillCount(pixels, visited, width, height, x, y, darkThreshold);
-                    largestDarkRegion = Math.max(largestDarkRegion, regionSize);
-                }
-            }
+        // Look for a box whose mean is dark rather than counting connected dark pixels.
+        // The box is the square inscribed in a disc of MIN_DARK_REGION_SIZE pixels, so a
+        // round pupil of that area still fills it; the integral image sums each box in
+        // constant time
+        int side = (int) Math.floor(Math.sqrt(2 * MIN_DARK_REGION_SIZE / Math.PI));
+        if (width < side || height < side) {
+            return false;
         }
+        IntegralImage integral = new IntegralImage(pixels, width, height);
+        long maxSum = (long) darkThreshold * side * side;
         
-        return largestDarkRegion >= MIN_DARK_REGION_SIZE;
-    }
-    
-    /**
-     * Flood fill to count connected dark pixels
-     */
-    private static int floodFillCount(byte[] pixels, boolean[] visited, int width, int height, 
-                                     int startX, int startY, int threshold) {
-        List<int[]> stack = new ArrayList<>();
-        stack.add(new int[]{startX, startY});
-        int count = 0;
-        
-        while (!stack.isEmpty()) {
-            int[] pos = stack.remove(stack.size() - 1);
-            int x = pos[0];
-            int y = pos[1];
-            int index = y * width + x;
-            
-            if (x < 0 || x >= width || y < 0 || y >= height || visited[index]) {
-                continue;
-            }
-            
-            if ((pixels[index] & 0xFF) < threshold) {
-                visited[index] = true;
-                count++;
-                
-                // Add neighbors
-                stack.add(new int[]{x + 1, y});
-                stack.add(new int[]{x - 1, y});
-                stack.add(new int[]{x, y + 1});
-                stack.add(new int[]{x, y - 1});
+        int maxX = Math.min(3 * width / 4, width - side);
+        int maxY = Math.min(3 * height / 4, height - side);
+        for (int y = height / 4; y < maxY; y++) {
+            for (int x = width / 4; x < maxX; x++) {
+                if (integral.sum(x, y, side, side) < maxSum) {
+                    return true;
+                }
             }
         }
         
-        return count;
+        return false;
     }
     
     /**
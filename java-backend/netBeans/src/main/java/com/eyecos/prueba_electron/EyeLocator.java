@@ -0,0 +1,122 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap eye localization for face and wide-angle captures.
+ *
+ * The image is reduced to a small grayscale copy and turned into an integral
+ * image. A Haar-like feature is then evaluated at several scales: a dark square
+ * (pupil and iris) flanked left and right by brighter squares of the same size
+ * (sclera). Every window costs a handful of lookups, so the whole scan is far
+ * cheaper than segmenting the full frame at a high working resolution.
+ *
+ * Each proposed region is a square crop sized so that the iris fills the part of
+ * the frame that {@link IrisSegmentation} searches.
+ */
+public class EyeLocator {
+
+    private static final int ANALYSIS_SIZE = 320;
+    private static final double MIN_CONTRAST = 30.0;
+    private static final double SCALE_STEP = 1.25;
+
+    /** Crop side relative to the dark square, which usually lands inside the iris. */
+    private static final double CROP_FACTOR = 3.5;
+
+    public static class EyeRegion {
+        public int x;
+        public int y;
+        public int size;
+        public double score;
+
+        public EyeRegion(int x, int y, int size, double score) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+            this.score = score;
+        }
+    }
+
+    /**
+     * Proposes up to {@code maxEyes} square eye crops in image coordinates, strongest
+     * first. Crops are shifted to stay inside the image.
+     */
+    public static List<EyeRegion> locateEyes(BufferedImage image, int maxEyes) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) ANALYSIS_SIZE / Math.max(width, height));
+        int analysisWidth = Math.max(1, (int) Math.round(width * scale));
+        int analysisHeight = Math.max(1, (int) Math.round(height * scale));
+
+        BufferedImage small = new BufferedImage(analysisWidth, analysisHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = small.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, analysisWidth, analysisHeight, null);
+        g.dispose();
+
+        byte[] gray = IrisSegmentation.convertToGrayscale(small);
+        IntegralImage integral = new IntegralImage(gray, analysisWidth, analysisHeight);
+
+        List<EyeRegion> candidates = new ArrayList<>();
+        int shortSide = Math.min(analysisWidth, analysisHeight);
+        for (double box = Math.max(4, shortSide / 40.0); box * 3 <= analysisWidth && box <= shortSide / 2.0;
+             box *= SCALE_STEP) {
+            int s = (int) Math.round(box);
+            int step = Math.max(1, s / 4);
+
+            for (int y = 0; y + s <= analysisHeight; y += step) {
+                for (int x = s; x + 2 * s <= analysisWidth; x += step) {
+                    double center = integral.mean(x, y, s, s);
+                    double left = integral.mean(x - s, y, s, s);
+                    double right = integral.mean(x + s, y, s, s);
+                    double contrast = Math.min(left, right) - center;
+
+                    if (contrast >= MIN_CONTRAST) {
+                        candidates.add(new EyeRegion(x + s / 2, y + s / 2, s, contrast));
+                    }
+                }
+            }
+        }
+
+        candidates.sort((a, b) -> Double.compare(b.score, a.score));
+
+        // Non-maximum suppression: keep a candidate only if its center lies outside
+        // the crop of every stronger candidate already kept, so one eye never yields
+        // a second, smaller crop inside its own
+        List<EyeRegion> kept = new ArrayList<>();
+        for (EyeRegion candidate : candidates) {
+            boolean overlaps = false;
+            for (EyeRegion other : kept) {
+                double reach = Math.max(candidate.size, other.size) * CROP_FACTOR / 2;
+                if (Math.abs(candidate.x - other.x) < reach && Math.abs(candidate.y - other.y) < reach) {
+                    overlaps = true;
+                    break;
+                }
+            }
+            if (!overlaps) {
+                kept.add(candidate);
+                if (kept.size() == maxEyes) {
+                    break;
+                }
+            }
+        }
+
+        // Convert to square crops in image coordinates
+        List<EyeRegion> regions = new ArrayList<>();
+        for (EyeRegion eye : kept) {
+            int size = (int) Math.round(eye.size * CROP_FACTOR / scale);
+            size = Math.min(size, Math.min(width, height));
+            int x = (int) Math.round(eye.x / scale) - size / 2;
+            int y = (int) Math.round(eye.y / scale) - size / 2;
+            x = Math.max(0, Math.min(width - size, x));
+            y = Math.max(0, Math.min(height - size, y));
+            regions.add(new EyeRegion(x, y, size, eye.score));
+        }
+
+        return regions;
+    }
+}
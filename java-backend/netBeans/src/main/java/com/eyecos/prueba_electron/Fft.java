@@ -0,0 +1,76 @@
+package com.eyecos.prueba_electron;
+
+/**
+ * In-place iterative radix-2 complex FFT for a fixed power-of-two length.
+ *
+ * Twiddle factors and the bit-reversal permutation are computed once per instance,
+ * so one instance can be reused for every row and column of a 2D transform.
+ * The inverse transform is not normalised; callers divide by the length.
+ */
+final class Fft {
+
+    final int size;
+    private final double[] cos;
+    private final double[] sin;
+    private final int[] reversed;
+
+    Fft(int size) {
+        if (size < 1 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + size);
+        }
+        this.size = size;
+        this.cos = new double[size / 2];
+        this.sin = new double[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = -2 * Math.PI * i / size;
+            cos[i] = Math.cos(angle);
+            sin[i] = Math.sin(angle);
+        }
+
+        this.reversed = new int[size];
+        int bits = Integer.numberOfTrailingZeros(size);
+        for (int i = 0; i < size; i++) {
+            reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    static int nextPowerOfTwo(int n) {
+        int size = 1;
+        while (size < n) {
+            size <<= 1;
+        }
+        return size;
+    }
+
+    void transform(double[] re, double[] im, boolean inverse) {
+        int n = size;
+
+        for (int i = 0; i < n; i++) {
+            int j = reversed[i];
+            if (j > i) {
+                double t = re[i]; re[i] = re[j]; re[j] = t;
+                t = im[i]; im[i] = im[j]; im[j] = t;
+            }
+        }
+
+        for (int half = 1; half < n; half <<= 1) {
+            int tableStep = n / (2 * half);
+            for (int start = 0; start < n; start += 2 * half) {
+                for (int k = 0; k < half; k++) {
+                    double wr = cos[k * tableStep];
+                    double wi = inverse ? -sin[k * tableStep] : sin[k * tableStep];
+
+                    int a = start + k;
+                    int b = a + half;
+                    double tr = re[b] * wr - im[b] * wi;
+                    double ti = re[b] * wi + im[b] * wr;
+
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
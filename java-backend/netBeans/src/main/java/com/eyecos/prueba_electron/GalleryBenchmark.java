@@ -0,0 +1,181 @@
+package com.eyecos.prueba_electron;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.eyecos.prueba_electron.IrisMatcher.IdentifyResult;
+import com.eyecos.prueba_electron.IrisMatcher.MatchOptions;
+
+/**
+ * Measures 1:N identification throughput for growing gallery sizes.
+ *
+ * Usage:
+ *   java -cp prueba_electron-1.0.0-cli.jar com.eyecos.prueba_electron.GalleryBenchmark
+ *        [--sizes=N,N,...] [--probes=N] [--max-shift=N] [--mapped=DIR]
+ *
+ * Galleries are filled with random templates whose masks hide an eyelid-like arc,
+ * which is how real impostor codes behave statistically. For each size it times
+ * impostor probes (a full scan) on one thread and on all cores, and genuine probes
+ * (a noisy, rotated copy of an enrolled template) that end the scan early.
+ *
+ * With --mapped each size is written to a {@link MappedGallery} file in DIR (kept
+ * between runs) and the timings also include how long the file takes to open.
+ */
+public class GalleryBenchmark {
+
+    /** Templates written per {@link MappedGallery#enrollAll} call while building a file. */
+    private static final int WRITE_BATCH = 50_000;
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 10_000, 100_000, 250_000 };
+        int probes = 5;
+        int maxShift = IrisMatcher.DEFAULT_MAX_SHIFT;
+        Path mappedDir = null;
+
+        for (String arg : args) {
+            if (arg.startsWith("--sizes=")) {
+                String[] parts = arg.substring("--sizes=".length()).split(",");
+                sizes = new int[parts.length];
+                for (int i = 0; i < parts.length; i++) {
+                    sizes[i] = Integer.parseInt(parts[i].trim());
+                }
+            } else if (arg.startsWith("--probes=")) {
+                probes = Integer.parseInt(arg.substring("--probes=".length()));
+            } else if (arg.startsWith("--max-shift=")) {
+                maxShift = Integer.parseInt(arg.substring("--max-shift=".length()));
+            } else if (arg.startsWith("--mapped=")) {
+                mappedDir = Paths.get(arg.substring("--mapped=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        System.out.println("Gallery benchmark: " + IrisCode.BITS + "-bit codes, " + (2 * maxShift + 1)
+                + " shifts, " + Runtime.getRuntime().availableProcessors() + " cores"
+                + (mappedDir != null ? ", memory-mapped" : ""));
+        System.out.printf("%10s %10s %14s %14s %14s %14s %14s%n",
+                "gallery", "open ms", "1 thread ms", "parallel ms", "templates/s", "genuine ms", "genuine hit");
+
+        for (int size : sizes) {
+            Random random = new Random(size);
+            IrisCode[] enrolled = new IrisCode[size];
+            for (int i = 0; i < size; i++) {
+                enrolled[i] = randomCode(random);
+            }
+
+            TemplateGallery gallery;
+            double openMillis = 0;
+            if (mappedDir != null) {
+                Files.createDirectories(mappedDir);
+                Path file = mappedDir.resolve("gallery-" + size + ".dat");
+                boolean stale;
+                try (MappedGallery existing = MappedGallery.open(file)) {
+                    stale = existing.recordCount() != size;
+                }
+                if (stale) {
+                    Files.delete(file);
+                    writeGallery(file, enrolled);
+                }
+                long start = System.nanoTime();
+                gallery = MappedGallery.open(file);
+                openMillis = (System.nanoTime() - start) / 1e6;
+            } else {
+                gallery = new InMemoryGallery();
+                for (int i = 0; i < size; i++) {
+                    gallery.enroll("subject-" + i, enrolled[i]);
+                }
+            }
+
+            MatchOptions sequential = new MatchOptions();
+            sequential.maxShift = maxShift;
+            sequential.parallel = false;
+            MatchOptions parallel = new MatchOptions();
+            parallel.maxShift = maxShift;
+
+            // Untimed runs so JIT compilation does not land in the first sample
+            gallery.identify(randomCode(random), sequential);
+            gallery.identify(randomCode(random), parallel);
+
+            double sequentialMillis = 0;
+            double parallelMillis = 0;
+            double genuineMillis = 0;
+            int hits = 0;
+            for (int p = 0; p < probes; p++) {
+                IrisCode impostor = randomCode(random);
+                sequentialMillis += time(gallery, impostor, sequential);
+                parallelMillis += time(gallery, impostor, parallel);
+
+                int target = random.nextInt(size);
+                IrisCode genuine = noisyCopy(enrolled[target], random).rotated(random.nextInt(7) - 3);
+                long start = System.nanoTime();
+                IdentifyResult result = gallery.identify(genuine, parallel);
+                genuineMillis += (System.nanoTime() - start) / 1e6;
+                if (result.best() != null && result.best().subjectId.equals("subject-" + target)) {
+                    hits++;
+                }
+            }
+
+            System.out.printf("%10d %10s %14.1f %14.1f %14.0f %14.1f %11d/%d%n",
+                    size, mappedDir != null ? String.format("%.1f", openMillis) : "-",
+                    sequentialMillis / probes, parallelMillis / probes,
+                    size / (parallelMillis / probes / 1000), genuineMillis / probes, hits, probes);
+
+            if (gallery instanceof MappedGallery) {
+                ((MappedGallery) gallery).close();
+            }
+        }
+    }
+
+    private static void writeGallery(Path file, IrisCode[] enrolled) throws IOException {
+        try (MappedGallery gallery = MappedGallery.open(file)) {
+            Map<String, IrisCode> batch = new HashMap<>();
+            for (int i = 0; i < enrolled.length; i++) {
+                batch.put("subject-" + i, enrolled[i]);
+                if (batch.size() == WRITE_BATCH || i == enrolled.length - 1) {
+                    gallery.enrollAll(batch);
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private static double time(TemplateGallery gallery, IrisCode probe, MatchOptions options) {
+        long start = System.nanoTime();
+        gallery.identify(probe, options);
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Random bits; the mask hides a random arc of the outer bands, like an upper eyelid. */
+    private static IrisCode randomCode(Random random) {
+        long[] bits = new long[IrisCode.WORDS];
+        long[] mask = new long[IrisCode.WORDS];
+        for (int w = 0; w < IrisCode.WORDS; w++) {
+            bits[w] = random.nextLong();
+            mask[w] = -1L;
+        }
+
+        int start = random.nextInt(IrisCode.COLUMNS);
+        int length = random.nextInt(IrisCode.COLUMNS / 4);
+        for (int row = IrisCode.ROWS / 2; row < IrisCode.ROWS; row++) {
+            for (int i = 0; i < length; i++) {
+                int bit = 2 * (row * IrisCode.COLUMNS + (start + i) % IrisCode.COLUMNS);
+                mask[bit >>> 6] &= ~(3L << bit);
+            }
+        }
+        return IrisCode.of(bits, mask);
+    }
+
+    /** Flips about 12% of the bits, roughly what a second capture of the same eye differs by. */
+    private static IrisCode noisyCopy(IrisCode code, Random random) {
+        long[] bits = code.bits();
+        for (int w = 0; w < bits.length; w++) {
+            bits[w] ^= random.nextLong() & random.nextLong() & random.nextLong();
+        }
+        return IrisCode.of(bits, code.mask());
+    }
+}
@@ -0,0 +1,52 @@
+package com.eyecos.prueba_electron;
+
+/**
+ * Sobel gradients of a square grayscale buffer, computed once so that circle
+ * scoring only has to look values up.
+ *
+ * The magnitude matches {@code IrisSegmentation.calculateGradient} bit for bit, so
+ * scores computed from this field are identical to the per-sample version.
+ * Border pixels (outside [1, width - 2]) are left at zero.
+ */
+final class GradientField {
+
+    final int width;
+    final int[] gx;
+    final int[] gy;
+    final double[] magnitude;
+    final double maxMagnitude;
+
+    GradientField(byte[] pixels, int width) {
+        this.width = width;
+        this.gx = new int[width * width];
+        this.gy = new int[width * width];
+        this.magnitude = new double[width * width];
+
+        double max = 0;
+        for (int y = 1; y < width - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int p00 = pixels[(y-1) * width + (x-1)] & 0xFF;
+                int p01 = pixels[(y-1) * width + x] & 0xFF;
+                int p02 = pixels[(y-1) * width + (x+1)] & 0xFF;
+                int p10 = pixels[y * width + (x-1)] & 0xFF;
+                int p12 = pixels[y * width + (x+1)] & 0xFF;
+                int p20 = pixels[(y+1) * width + (x-1)] & 0xFF;
+                int p21 = pixels[(y+1) * width + x] & 0xFF;
+                int p22 = pixels[(y+1) * width + (x+1)] & 0xFF;
+
+                int sx = -p00 + p02 - 2*p10 + 2*p12 - p20 + p22;
+                int sy = -p00 - 2*p01 - p02 + p20 + 2*p21 + p22;
+                double m = Math.sqrt(sx * sx + sy * sy);
+
+                int index = y * width + x;
+                gx[index] = sx;
+                gy[index] = sy;
+                magnitude[index] = m;
+                if (m > max) {
+                    max = m;
+                }
+            }
+        }
+        this.maxMagnitude = max;
+    }
+}
@@ -0,0 +1,134 @@
+package com.eyecos.prueba_electron;
+
+import com.eyecos.prueba_electron.IrisSegmentation.SearchRegion;
+import com.eyecos.prueba_electron.IrisSegmentation.SegmentationOptions;
+
+/**
+ * Gradient-direction Hough transform: every strong edge pixel votes, for each
+ * candidate radius, for the one center that lies that far back along its
+ * gradient. Pupil and iris boundaries both get brighter outward, so the gradient
+ * points away from the center.
+ *
+ * Votes are weighted by gradient magnitude and each (cx, cy, r) cell is normalised
+ * by the circumference, so the peak approximates the mean boundary gradient that
+ * the Daugman engine maximises, at O(edges x radii) instead of
+ * O(centers x radii x samples).
+ */
+public class HoughVotingEngine implements SegmentationEngine {
+
+    /** Edge pixels weaker than this fraction of the strongest gradient do not vote. */
+    private static final double EDGE_FRACTION = 0.2;
+
+    /** Edges voted between deadline checks. */
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+
+    @Override
+    public String name() {
+        return "hough";
+    }
+
+    @Override
+    public Circles findCircles(byte[] blurredPixels, int width, SearchRegion region,
+                               SegmentationOptions options, long deadlineNanos) {
+        if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+            return Circles.notFound(0);
+        }
+        GradientField gradients = new GradientField(blurredPixels, width);
+
+        int minRadius = Math.min(region.pupilMinRadius, region.irisMinRadius);
+        int maxRadius = Math.max(region.pupilMaxRadius, region.irisMaxRadius);
+        int spanX = region.maxX - region.minX + 1;
+        int spanY = region.maxY - region.minY + 1;
+        int plane = spanX * spanY;
+        float[] accumulator = new float[(maxRadius - minRadius + 1) * plane];
+
+        double threshold = EDGE_FRACTION * gradients.maxMagnitude;
+        int[] edges = new int[width * width];
+        int edgeCount = 0;
+        for (int y = 2; y < width - 2; y++) {
+            for (int x = 2; x < width - 2; x++) {
+                int index = y * width + x;
+                if (gradients.magnitude[index] > 0 && gradients.magnitude[index] >= threshold) {
+                    edges[edgeCount++] = index;
+                }
+            }
+        }
+
+        int voted = 0;
+        for (; voted < edgeCount; voted++) {
+            if (voted % DEADLINE_CHECK_INTERVAL == 0
+                    && deadlineNanos != NO_DEADLINE && System.nanoTime() - deadlineNanos > 0) {
+                break;
+            }
+
+            int index = edges[voted];
+            int x = index % width;
+            int y = index / width;
+            double magnitude = gradients.magnitude[index];
+            double ux = gradients.gx[index] / magnitude;
+            double uy = gradients.gy[index] / magnitude;
+
+            for (int r = minRadius; r <= maxRadius; r++) {
+                int cx = (int) Math.round(x - r * ux);
+                int cy = (int) Math.round(y - r * uy);
+                if (cx < region.minX || cx > region.maxX || cy < region.minY || cy > region.maxY) {
+                    continue;
+                }
+                accumulator[(r - minRadius) * plane + (cy - region.minY) * spanX + (cx - region.minX)]
+                        += (float) magnitude;
+            }
+        }
+
+        if (voted == 0 && edgeCount > 0) {
+            return Circles.notFound(0);
+        }
+
+        Circles circles = new Circles(
+                peak(accumulator, region, minRadius, region.pupilMinRadius, region.pupilMaxRadius),
+                peak(accumulator, region, minRadius, region.irisMinRadius, region.irisMaxRadius));
+        circles.completed = voted == edgeCount;
+        circles.coverage = edgeCount == 0 ? 1.0 : (double) voted / edgeCount;
+        return circles;
+    }
+
+    /**
+     * Strongest cell for radii in [fromRadius, toRadius]. Rounding scatters the votes
+     * of one circle over neighbouring centers, so each center is scored with its
+     * 3x3 neighbourhood.
+     */
+    private static int[] peak(float[] accumulator, SearchRegion region, int minRadius,
+                              int fromRadius, int toRadius) {
+        int spanX = region.maxX - region.minX + 1;
+        int spanY = region.maxY - region.minY + 1;
+        int plane = spanX * spanY;
+
+        int[] best = { (region.minX + region.maxX) / 2, (region.minY + region.maxY) / 2, fromRadius };
+        double bestScore = -1;
+
+        for (int r = fromRadius; r <= toRadius; r++) {
+            int offset = (r - minRadius) * plane;
+            double circumference = 2 * Math.PI * r;
+
+            for (int y = 0; y < spanY; y++) {
+                for (int x = 0; x < spanX; x++) {
+                    double votes = 0;
+                    for (int dy = Math.max(0, y - 1); dy <= Math.min(spanY - 1, y + 1); dy++) {
+                        for (int dx = Math.max(0, x - 1); dx <= Math.min(spanX - 1, x + 1); dx++) {
+                            votes += accumulator[offset + dy * spanX + dx];
+                        }
+                    }
+
+                    double score = votes / circumference;
+                    if (score > bestScore) {
+                        bestScore = score;
+                        best[0] = region.minX + x;
+                        best[1] = region.minY + y;
+                        best[2] = r;
+                    }
+                }
+            }
+        }
+
+        return best;
+    }
+}
@@ -0,0 +1,155 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+
+/**
+ * Decodes uploaded images close to the size the pipeline actually works at.
+ *
+ * {@code ImageIO.read} always decodes the full raster; a 12MP photo becomes a 48MB
+ * ARGB image that is downscaled to 256px straight away. This decoder reads the
+ * header first, rejects images above a pixel limit, and then asks the
+ * {@link ImageReader} to subsample (and optionally crop) while decoding, so the
+ * full-size raster is never allocated.
+ *
+ * Limits can be changed with the system properties {@code iris.decode.targetSize}
+ * (longest side to decode at, default 1024) and {@code iris.decode.maxPixels}
+ * (largest accepted source image, default 100 million pixels).
+ */
+public class ImageDecoder {
+
+    public static final int DEFAULT_TARGET_SIZE = Integer.getInteger("iris.decode.targetSize", 1024);
+    public static final long DEFAULT_MAX_PIXELS = Long.getLong("iris.decode.maxPixels", 100_000_000L);
+
+    /**
+     * Thrown when the source image has more pixels than allowed
+     */
+    public static class ImageTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ImageTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Thrown when a requested source region does not overlap the image. It is the
+     * client's crop hint that is wrong, not the image data
+     */
+    public static class InvalidRegionException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        public InvalidRegionException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A decoded (possibly subsampled and cropped) image plus what is needed to map
+     * coordinates found on it back to the source image.
+     */
+    public static class DecodedImage {
+        public final BufferedImage image;
+        public final int sourceWidth;
+        public final int sourceHeight;
+        public final int subsampling;
+        public final int offsetX;
+        public final int offsetY;
+
+        DecodedImage(BufferedImage image, int sourceWidth, int sourceHeight,
+                     int subsampling, int offsetX, int offsetY) {
+            this.image = image;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.subsampling = subsampling;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+
+        /** Maps circles found on {@link #image} to source image coordinates. */
+        public IrisData toSourceCoordinates(IrisData data) {
+            if (subsampling == 1 && offsetX == 0 && offsetY == 0) {
+                return data;
+            }
+            return data.transformed(subsampling, offsetX, offsetY);
+        }
+
+        /**
+         * Maps hints given in source pixels onto {@link #image}. The crop is dropped,
+         * since the decoder applies it as the source region.
+         */
+        public IrisSegmentation.SearchHints toDecodedHints(IrisSegmentation.SearchHints hints) {
+            return hints == null ? null : hints.toLocal(subsampling, offsetX, offsetY);
+        }
+    }
+
+    public static DecodedImage decode(InputStream input) throws IOException {
+        return decode(input, DEFAULT_TARGET_SIZE, DEFAULT_MAX_PIXELS, null);
+    }
+
+    /**
+     * Decodes the first image in the stream.
+     *
+     * @param targetSize   the decoded image's longest side is kept at or above this
+     * @param maxPixels    source images with more pixels are rejected before decoding
+     * @param sourceRegion optional crop in source pixels; clipped to the image
+     * @return the decoded image, or null if no installed reader understands the data
+     * @throws ImageTooLargeException if the source exceeds {@code maxPixels}
+     * @throws InvalidRegionException if {@code sourceRegion} lies outside the image
+     */
+    public static DecodedImage decode(InputStream input, int targetSize, long maxPixels,
+                                      Rectangle sourceRegion) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            if (stream == null) {
+                return null;
+            }
+
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+
+                if ((long) width * height > maxPixels) {
+                    throw new ImageTooLargeException("Image is " + width + "x" + height
+                            + " pixels; the limit is " + maxPixels + " pixels");
+                }
+
+                Rectangle region = new Rectangle(0, 0, width, height);
+                if (sourceRegion != null) {
+                    region = region.intersection(sourceRegion);
+                    if (region.isEmpty()) {
+                        throw new InvalidRegionException("Crop " + sourceRegion.x + "," + sourceRegion.y + " "
+                                + sourceRegion.width + "x" + sourceRegion.height + " lies outside the "
+                                + width + "x" + height + " image");
+                    }
+                }
+
+                int subsampling = Math.max(1, Math.max(region.width, region.height) / Math.max(1, targetSize));
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceRegion(region);
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                BufferedImage image = reader.read(0, param);
+                return new DecodedImage(image, width, height, subsampling, region.x, region.y);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
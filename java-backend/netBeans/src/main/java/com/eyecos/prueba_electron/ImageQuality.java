@@ -0,0 +1,188 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cheap image-quality gate that runs before segmentation.
+ *
+ * Blurred, badly exposed or glare-covered captures tend to pass {@link EyeDetector}
+ * and then cost seconds of circle search for a meaningless answer. The checks here
+ * work on a small grayscale copy and take a few milliseconds:
+ * 1. Focus: variance of the Laplacian along x and y (blur removes high frequencies)
+ * 2. Exposure: mean brightness and the share of clipped (near 0 or 255) pixels
+ * 3. Glare: share of saturated pixels in the central region, where the iris is searched
+ *
+ * Every score is recorded in {@link Metrics} whether or not the image passes.
+ */
+public class ImageQuality {
+
+    private static final int ANALYSIS_SIZE = 256;
+    private static final int DARK_CLIP_LEVEL = 5;
+    private static final int BRIGHT_CLIP_LEVEL = 250;
+
+    /**
+     * Acceptance thresholds. {@link #DEFAULT_THRESHOLDS} reads each one from an
+     * {@code iris.quality.*} system property once, when the class loads, so
+     * deployments can tune them without a rebuild.
+     */
+    public static class Thresholds {
+        /** Minimum Laplacian variance (weaker of the x and y directions) at the analysis size. */
+        public final double minFocus;
+
+        public final double minBrightness;
+        public final double maxBrightness;
+
+        /** Maximum share of pixels clipped at either end of the histogram. */
+        public final double maxClipped;
+
+        /** Maximum share of saturated pixels in the central search region. */
+        public final double maxGlare;
+
+        public Thresholds(double minFocus, double minBrightness, double maxBrightness, double maxClipped,
+                          double maxGlare) {
+            this.minFocus = minFocus;
+            this.minBrightness = minBrightness;
+            this.maxBrightness = maxBrightness;
+            this.maxClipped = maxClipped;
+            this.maxGlare = maxGlare;
+        }
+
+        static Thresholds fromSystemProperties() {
+            return new Thresholds(
+                    Double.parseDouble(System.getProperty("iris.quality.minFocus", "20")),
+                    Double.parseDouble(System.getProperty("iris.quality.minBrightness", "40")),
+                    Double.parseDouble(System.getProperty("iris.quality.maxBrightness", "215")),
+                    Double.parseDouble(System.getProperty("iris.quality.maxClipped", "0.3")),
+                    Double.parseDouble(System.getProperty("iris.quality.maxGlare", "0.08")));
+        }
+    }
+
+    public static final Thresholds DEFAULT_THRESHOLDS = Thresholds.fromSystemProperties();
+
+    public static class QualityResult {
+        public boolean acceptable;
+        public double focusScore;
+        public double brightness;
+        public double clippedFraction;
+        public double glareFraction;
+        public String reason;
+    }
+
+    public static QualityResult assess(BufferedImage image) {
+        return assess(image, DEFAULT_THRESHOLDS);
+    }
+
+    public static QualityResult assess(BufferedImage image, Thresholds thresholds) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = Math.min(1.0, (double) ANALYSIS_SIZE / Math.max(width, height));
+        int analysisWidth = Math.max(3, (int) Math.round(width * scale));
+        int analysisHeight = Math.max(3, (int) Math.round(height * scale));
+
+        BufferedImage small = new BufferedImage(analysisWidth, analysisHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = small.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, analysisWidth, analysisHeight, null);
+        g.dispose();
+
+        byte[] gray = IrisSegmentation.convertToGrayscale(small);
+
+        QualityResult result = new QualityResult();
+        result.focusScore = laplacianVariance(gray, analysisWidth, analysisHeight);
+
+        int[] histogram = new int[256];
+        for (byte pixel : gray) {
+            histogram[pixel & 0xFF]++;
+        }
+        long total = 0;
+        long clipped = 0;
+        for (int level = 0; level < 256; level++) {
+            total += (long) level * histogram[level];
+            if (level <= DARK_CLIP_LEVEL || level >= BRIGHT_CLIP_LEVEL) {
+                clipped += histogram[level];
+            }
+        }
+        result.brightness = (double) total / gray.length;
+        result.clippedFraction = (double) clipped / gray.length;
+
+        // Same central window as the segmentation search region
+        int saturated = 0;
+        int counted = 0;
+        for (int y = analysisHeight / 4; y < 3 * analysisHeight / 4; y++) {
+            for (int x = analysisWidth / 4; x < 3 * analysisWidth / 4; x++) {
+                if ((gray[y * analysisWidth + x] & 0xFF) >= BRIGHT_CLIP_LEVEL) {
+                    saturated++;
+                }
+                counted++;
+            }
+        }
+        result.glareFraction = counted == 0 ? 0 : (double) saturated / counted;
+
+        List<String> problems = new ArrayList<>();
+        if (result.focusScore < thresholds.minFocus) {
+            problems.add(String.format("out of focus (%.1f < %.1f)", result.focusScore, thresholds.minFocus));
+        }
+        if (result.brightness < thresholds.minBrightness) {
+            problems.add(String.format("underexposed (brightness %.1f < %.1f)", result.brightness, thresholds.minBrightness));
+        }
+        if (result.brightness > thresholds.maxBrightness) {
+            problems.add(String.format("overexposed (brightness %.1f > %.1f)", result.brightness, thresholds.maxBrightness));
+        }
+        if (result.clippedFraction > thresholds.maxClipped) {
+            problems.add(String.format("clipped highlights or shadows (%.2f > %.2f)", result.clippedFraction, thresholds.maxClipped));
+        }
+        if (result.glareFraction > thresholds.maxGlare) {
+            problems.add(String.format("specular glare (%.2f > %.2f)", result.glareFraction, thresholds.maxGlare));
+        }
+        result.acceptable = problems.isEmpty();
+        result.reason = result.acceptable
+                ? "Image quality is acceptable"
+                : "Image quality too low: " + String.join(", ", problems);
+
+        Metrics.record("quality.focus", result.focusScore);
+        Metrics.record("quality.brightness", result.brightness);
+        Metrics.record("quality.clipped", result.clippedFraction);
+        Metrics.record("quality.glare", result.glareFraction);
+        Metrics.increment(result.acceptable ? "quality.accepted" : "quality.rejected");
+
+        return result;
+    }
+
+    /**
+     * Variance of the Laplacian, taken separately along x and y and reporting the
+     * smaller of the two. Motion blur flattens detail along one direction only, which
+     * the full 4-neighbour Laplacian would average away.
+     */
+    private static double laplacianVariance(byte[] pixels, int width, int height) {
+        double sumX = 0;
+        double sumSquaresX = 0;
+        double sumY = 0;
+        double sumSquaresY = 0;
+        long count = 0;
+
+        for (int y = 1; y < height - 1; y++) {
+            for (int x = 1; x < width - 1; x++) {
+                int index = y * width + x;
+                int center = 2 * (pixels[index] & 0xFF);
+                int dxx = (pixels[index - 1] & 0xFF) + (pixels[index + 1] & 0xFF) - center;
+                int dyy = (pixels[index - width] & 0xFF) + (pixels[index + width] & 0xFF) - center;
+                sumX += dxx;
+                sumSquaresX += (double) dxx * dxx;
+                sumY += dyy;
+                sumSquaresY += (double) dyy * dyy;
+                count++;
+            }
+        }
+
+        if (count == 0) {
+            return 0;
+        }
+        double meanX = sumX / count;
+        double meanY = sumY / count;
+        return Math.min(sumSquaresX / count - meanX * meanX, sumSquaresY / count - meanY * meanY);
+    }
+}
@@ -0,0 +1,106 @@
+package com.eyecos.prueba_electron;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.eyecos.prueba_electron.IrisMatcher.IdentifyResult;
+import com.eyecos.prueba_electron.IrisMatcher.MatchOptions;
+
+/**
+ * Heap-backed {@link TemplateGallery}.
+ *
+ * Templates are stored back to back in two flat {@code long[]} arrays (code bits
+ * and mask bits) rather than as one object per subject, so a scan walks memory
+ * sequentially and a million templates cost two arrays instead of millions of
+ * small objects. Removal moves the last entry into the freed slot to keep the
+ * arrays dense.
+ *
+ * Identifications share a read lock and run concurrently; enrollment and removal
+ * take the write lock.
+ */
+public class InMemoryGallery implements TemplateGallery {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private long[] bits = new long[INITIAL_CAPACITY * IrisCode.WORDS];
+    private long[] mask = new long[INITIAL_CAPACITY * IrisCode.WORDS];
+    private int size;
+
+    @Override
+    public void enroll(String subjectId, IrisCode code) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(subjectId);
+            if (slot == null) {
+                if (size == ids.length) {
+                    int capacity = ids.length * 2;
+                    ids = Arrays.copyOf(ids, capacity);
+                    bits = Arrays.copyOf(bits, capacity * IrisCode.WORDS);
+                    mask = Arrays.copyOf(mask, capacity * IrisCode.WORDS);
+                }
+                slot = size++;
+                slots.put(subjectId, slot);
+                ids[slot] = subjectId;
+            }
+            System.arraycopy(code.bits, 0, bits, slot * IrisCode.WORDS, IrisCode.WORDS);
+            System.arraycopy(code.mask, 0, mask, slot * IrisCode.WORDS, IrisCode.WORDS);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String subjectId) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(subjectId);
+            if (slot == null) {
+                return false;
+            }
+            int last = --size;
+            if (slot != last) {
+                ids[slot] = ids[last];
+                slots.put(ids[slot], slot);
+                System.arraycopy(bits, last * IrisCode.WORDS, bits, slot * IrisCode.WORDS, IrisCode.WORDS);
+                System.arraycopy(mask, last * IrisCode.WORDS, mask, slot * IrisCode.WORDS, IrisCode.WORDS);
+            }
+            ids[last] = null;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public IdentifyResult identify(IrisCode probe, MatchOptions options) {
+        IrisMatcher.Probe prepared = new IrisMatcher.Probe(probe, options.maxShift);
+
+        lock.readLock().lock();
+        try {
+            long[] storedBits = bits;
+            long[] storedMask = mask;
+            return IrisMatcher.scan(size, options,
+                    chunk -> (entry, limit, shiftOut) -> IrisMatcher.bestDistance(prepared,
+                            storedBits, storedMask, entry * IrisCode.WORDS, limit, shiftOut),
+                    entry -> ids[entry]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
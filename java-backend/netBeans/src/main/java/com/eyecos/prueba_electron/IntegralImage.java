@@ -0,0 +1,39 @@
+package com.eyecos.prueba_electron;
+
+/**
+ * Summed-area table of an 8-bit grayscale buffer: the sum of any axis-aligned
+ * box is four lookups, whatever the box size.
+ */
+final class IntegralImage {
+
+    final int width;
+    final int height;
+    private final long[] sums;
+
+    IntegralImage(byte[] pixels, int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.sums = new long[(width + 1) * (height + 1)];
+
+        int stride = width + 1;
+        for (int y = 0; y < height; y++) {
+            long rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += pixels[y * width + x] & 0xFF;
+                sums[(y + 1) * stride + (x + 1)] = sums[y * stride + (x + 1)] + rowSum;
+            }
+        }
+    }
+
+    /** Sum of the box with top-left (x, y); the box must lie inside the image. */
+    long sum(int x, int y, int boxWidth, int boxHeight) {
+        int stride = width + 1;
+        int x2 = x + boxWidth;
+        int y2 = y + boxHeight;
+        return sums[y2 * stride + x2] - sums[y * stride + x2] - sums[y2 * stride + x] + sums[y * stride + x];
+    }
+
+    double mean(int x, int y, int boxWidth, int boxHeight) {
+        return (double) sum(x, y, boxWidth, boxHeight) / ((long) boxWidth * boxHeight);
+    }
+}
@@ -0,0 +1,86 @@
+package com.eyecos.prueba_electron;
+
+/**
+ * Bit-packed iris template: two phase bits per code sample plus an occlusion mask.
+ *
+ * The code is a grid of {@link #ROWS} radial bands by {@link #COLUMNS} angles. Sample
+ * (row, column) occupies bits {@code 2 * (row * COLUMNS + column)} and the one after
+ * it, so each band fills whole longs and rotating the eye only moves bits inside a
+ * band. A mask bit is set where the matching code bit was computed from visible iris.
+ *
+ * Templates are immutable once built; {@link IrisEncoder} creates them from a
+ * normalized iris and {@link IrisMatcher} compares them.
+ */
+public final class IrisCode {
+
+    public static final int ROWS = 8;
+    public static final int COLUMNS = 128;
+    public static final int BITS = 2 * ROWS * COLUMNS;
+    public static final int WORDS = BITS / Long.SIZE;
+
+    /** Longs per radial band. */
+    static final int ROW_WORDS = WORDS / ROWS;
+
+    final long[] bits;
+    final long[] mask;
+
+    IrisCode(long[] bits, long[] mask) {
+        if (bits.length != WORDS || mask.length != WORDS) {
+            throw new IllegalArgumentException("Iris code needs " + WORDS + " words, got "
+                    + bits.length + " and " + mask.length);
+        }
+        this.bits = bits;
+        this.mask = mask;
+    }
+
+    /** Rebuilds a template from words previously read with {@link #bits()} and {@link #mask()}. */
+    public static IrisCode of(long[] bits, long[] mask) {
+        return new IrisCode(bits.clone(), mask.clone());
+    }
+
+    public long[] bits() {
+        return bits.clone();
+    }
+
+    public long[] mask() {
+        return mask.clone();
+    }
+
+    /** Number of unmasked bits. */
+    public int validBits() {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Copy of this template rotated by {@code shift} columns: the sample at column c
+     * moves to column c + shift (mod COLUMNS) in every band.
+     */
+    public IrisCode rotated(int shift) {
+        int columns = Math.floorMod(shift, COLUMNS);
+        if (columns == 0) {
+            return this;
+        }
+
+        long[] rotatedBits = new long[WORDS];
+        long[] rotatedMask = new long[WORDS];
+        int bandBits = 2 * COLUMNS;
+        for (int row = 0; row < ROWS; row++) {
+            int base = row * bandBits;
+            for (int bit = 0; bit < bandBits; bit++) {
+                int from = base + bit;
+                int to = base + (bit + 2 * columns) % bandBits;
+                if ((bits[from >>> 6] & (1L << from)) != 0) {
+                    rotatedBits[to >>> 6] |= 1L << to;
+                }
+                if ((mask[from >>> 6] & (1L << from)) != 0) {
+                    rotatedMask[to >>> 6] |= 1L << to;
+                }
+            }
+        }
+        return new IrisCode(rotatedBits, rotatedMask);
+    }
+}
@@ -1,14 +1,18 @@
 package com.eyecos.prueba_electron;
 
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.util.ArrayList;
 import java.util.Base64;
-import javax.imageio.ImageIO;
+import java.util.List;
 import com.google.gson.Gson;
 import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.ImageDecoder.DecodedImage;
 
 /**
  * Command Line Interface controller for the Iris Segmentation application.
@@ -16,13 +20,37 @@ import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
  * 
  * It reads base64-encoded image data from stdin (to handle large images),
  * processes it, and outputs the results as JSON to stdout.
+ * 
+ * Optional arguments:
+ *   --deadline-ms=N   stop the circle search after N milliseconds and return
+ *                     the best result found so far
+ *   --search=MODE     exhaustive (default), pruned or fft
+ *   --engine=NAME     daugman (default) or hough
+ *   --locate-eyes[=N] treat the input as a face or wide shot: locate up to N
+ *                     eye regions (default 2) and segment each of them
+ *
+ * Region-of-interest hints, in source image pixels:
+ *   --crop=X,Y,W,H            only segment this rectangle
+ *   --pupil=X,Y[,TOLERANCE]   approximate pupil center and how far to search from it
+ *   --pupil-radius=MIN,MAX    pupil radius range
+ *   --iris-radius=MIN,MAX     iris radius range
+ *
+ * With --bulk=DIR|LIST the controller reads images from disk instead of stdin and
+ * writes one result per image to a file; see {@link BulkProcessor}.
  */
 public class IrisController {
     
+    private static final int DEFAULT_MAX_EYES = 2;
+    
     public static void main(String[] args) {
+        if (BulkProcessor.isBulk(args)) {
+            System.exit(BulkProcessor.run(args));
+        }
         try {
             // Log to stderr that we're starting (this won't interfere with JSON output)
             System.err.println("CLI: Starting iris segmentation process");
+            IrisSegmentation.SegmentationOptions options = parseOptions(args);
+            int maxEyes = parseMaxEyes(args);
             System.err.println("CLI: Reading image data from stdin...");
             
             // Read the entire input from stdin
@@ -56,13 +84,27 @@ public class IrisController {
                 }
             }
             
-            // Decode the base64 string into a BufferedImage
-            BufferedImage image = decodeBase64Image(base64Data);
-            if (image == null) {
-                throw new IOException("Failed to decode image from base64 data");
+            // Decode the base64 string into a BufferedImage, subsampled towards the working size
+            DecodedImage decoded;
+            try {
+                decoded = decodeBase64Image(base64Data, options.hints == null ? null : options.hints.crop);
+            } catch (ImageDecoder.ImageTooLargeException e) {
+                Gson gson = new Gson();
+                System.out.println(gson.toJson(new ErrorResponse("IMAGE_TOO_LARGE", e.getMessage())));
+                System.err.println("CLI: Image rejected - " + e.getMessage());
+                System.exit(0);
+                return;
             }
+            BufferedImage image = decoded.image;
+            options.hints = decoded.toDecodedHints(options.hints);
             
-            System.err.println("CLI: Decoded image dimensions: " + image.getWidth() + "x" + image.getHeight());
+            System.err.println("CLI: Decoded image dimensions: " + image.getWidth() + "x" + image.getHeight()
+                    + " (source " + decoded.sourceWidth + "x" + decoded.sourceHeight + ")");
+            
+            if (maxEyes > 0) {
+                outputLocatedEyes(decoded, maxEyes, options);
+                System.exit(0);
+            }
             
             // First, check if the image contains an eye
             System.err.println("CLI: Performing eye detection...");
@@ -83,10 +125,24 @@ public class IrisController {
             
             System.err.println("CLI: Eye detected with confidence: " + eyeDetection.confidence);
             
+            // Reject blurred or badly exposed captures before the expensive search
+            ImageQuality.QualityResult quality = ImageQuality.assess(image);
+            if (!quality.acceptable) {
+                Gson gson = new Gson();
+                System.out.println(gson.toJson(new QualityErrorResponse(quality)));
+                System.err.println("CLI: Image rejected - " + quality.reason);
+                System.exit(0);
+            }
+            
             // Process the image using the iris segmentation algorithm
-            IrisData result = IrisSegmentation.segmentIris(image);
+            IrisData result = decoded.toSourceCoordinates(IrisSegmentation.segmentIris(image, 256, options));
             
             System.err.println("CLI: Processing completed");
+            if (!result.circlesFound) {
+                System.err.println("CLI: Deadline passed before any circle was scored");
+            } else if (!result.searchCompleted) {
+                System.err.println("CLI: Deadline reached, search coverage " + result.searchCoverage);
+            }
             System.err.println("CLI: Pupil - center(" + result.pupilCenterX + "," + result.pupilCenterY + ") radius=" + result.pupilRadius);
             System.err.println("CLI: Iris - center(" + result.irisCenterX + "," + result.irisCenterY + ") radius=" + result.irisRadius);
             
@@ -115,27 +171,141 @@ public class IrisController {
         }
     }
     
+    /**
+     * Parses the optional command line arguments into segmentation options
+     */
+    static IrisSegmentation.SegmentationOptions parseOptions(String[] args) {
+        IrisSegmentation.SegmentationOptions options = new IrisSegmentation.SegmentationOptions();
+        IrisSegmentation.SearchHints hints = new IrisSegmentation.SearchHints();
+        boolean hinted = false;
+        
+        for (String arg : args) {
+            if (arg.startsWith("--deadline-ms=")) {
+                options.deadlineMillis = Long.parseLong(arg.substring("--deadline-ms=".length()));
+            } else if (arg.startsWith("--engine=")) {
+                options.engine = SegmentationEngine.forName(arg.substring("--engine=".length()));
+            } else if (arg.startsWith("--search=")) {
+                options.searchMode = IrisSegmentation.SearchMode.parse(arg.substring("--search=".length()));
+            } else if (arg.equals("--locate-eyes") || arg.startsWith("--locate-eyes=")) {
+                // Handled by parseMaxEyes
+            } else if (arg.startsWith("--crop=")) {
+                hinted = true;
+                double[] values = parseNumbers(arg, "--crop=", 4, 4);
+                hints.crop = new Rectangle((int) values[0], (int) values[1], (int) values[2], (int) values[3]);
+            } else if (arg.startsWith("--pupil=")) {
+                hinted = true;
+                double[] values = parseNumbers(arg, "--pupil=", 2, 3);
+                hints.pupilCenter = new Point2D.Double(values[0], values[1]);
+                if (values.length == 3) {
+                    hints.centerTolerance = values[2];
+                }
+            } else if (arg.startsWith("--pupil-radius=")) {
+                hinted = true;
+                double[] values = parseNumbers(arg, "--pupil-radius=", 2, 2);
+                hints.pupilMinRadius = values[0];
+                hints.pupilMaxRadius = values[1];
+            } else if (arg.startsWith("--iris-radius=")) {
+                hinted = true;
+                double[] values = parseNumbers(arg, "--iris-radius=", 2, 2);
+                hints.irisMinRadius = values[0];
+                hints.irisMaxRadius = values[1];
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        
+        if (hinted) {
+            hints.validate();
+            options.hints = hints;
+        }
+        return options;
+    }
+    
+    /**
+     * Parses the comma-separated numbers after {@code prefix}
+     */
+    private static double[] parseNumbers(String arg, String prefix, int minCount, int maxCount) {
+        String[] parts = arg.substring(prefix.length()).split(",");
+        if (parts.length < minCount || parts.length > maxCount) {
+            throw new IllegalArgumentException("Expected " + (minCount == maxCount ? "" + minCount
+                    : minCount + " to " + maxCount) + " comma-separated numbers in " + arg);
+        }
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+    
+    /**
+     * Returns the eye limit requested with --locate-eyes, or 0 for the single-eye path
+     */
+    static int parseMaxEyes(String[] args) {
+        int maxEyes = 0;
+        for (String arg : args) {
+            if (arg.equals("--locate-eyes")) {
+                maxEyes = DEFAULT_MAX_EYES;
+            } else if (arg.startsWith("--locate-eyes=")) {
+                maxEyes = Integer.parseInt(arg.substring("--locate-eyes=".length()));
+                if (maxEyes < 1) {
+                    throw new IllegalArgumentException("--locate-eyes must be at least 1");
+                }
+            }
+        }
+        return maxEyes;
+    }
+    
+    /**
+     * Locates eye regions in a face or wide shot and prints every segmented eye as JSON
+     */
+    private static void outputLocatedEyes(DecodedImage decoded, int maxEyes,
+                                          IrisSegmentation.SegmentationOptions options) {
+        System.err.println("CLI: Locating up to " + maxEyes + " eye regions...");
+        List<IrisPipeline.EyeResult> eyes = IrisPipeline.segmentLocatedEyes(decoded.image, maxEyes, 256, options);
+        
+        Gson gson = new Gson();
+        if (eyes.isEmpty()) {
+            System.out.println(gson.toJson(new ErrorResponse("NOT_AN_EYE",
+                "No eye regions were found in the image")));
+            System.err.println("CLI: Image rejected - no eye regions found");
+            return;
+        }
+        
+        List<IrisDataWithConfidence> results = new ArrayList<>();
+        for (IrisPipeline.EyeResult eye : eyes) {
+            IrisData data = decoded.toSourceCoordinates(eye.irisData);
+            System.err.println("CLI: Eye - pupil(" + data.pupilCenterX + "," + data.pupilCenterY + ") radius=" + data.pupilRadius
+                    + ", iris(" + data.irisCenterX + "," + data.irisCenterY + ") radius=" + data.irisRadius);
+            results.add(new IrisDataWithConfidence(data, eye.confidence));
+        }
+        
+        System.out.println(gson.toJson(new MultiEyeResult(results)));
+        System.err.println("CLI: Successfully output JSON result for " + results.size() + " eye(s)");
+    }
+    
     /**
      * Helper method to decode base64 image data into a BufferedImage
      */
-    private static BufferedImage decodeBase64Image(String base64Data) throws IOException {
+    private static DecodedImage decodeBase64Image(String base64Data, Rectangle crop) throws IOException {
+        // Decode the base64 string into bytes
+        byte[] imageBytes;
         try {
-            // Decode the base64 string into bytes
-            byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-            
-            // Convert bytes into a BufferedImage
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-            BufferedImage image = ImageIO.read(bis);
-            
-            if (image == null) {
-                throw new IOException("ImageIO.read returned null - invalid image data");
-            }
-            
-            return image;
-            
+            imageBytes = Base64.getDecoder().decode(base64Data);
         } catch (IllegalArgumentException e) {
             throw new IOException("Invalid base64 data: " + e.getMessage(), e);
         }
+        
+        // Convert bytes into a BufferedImage; a crop outside the image is an
+        // IllegalArgumentException like any other bad option
+        ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
+        DecodedImage decoded = ImageDecoder.decode(bis, ImageDecoder.DEFAULT_TARGET_SIZE,
+                                                   ImageDecoder.DEFAULT_MAX_PIXELS, crop);
+        
+        if (decoded == null) {
+            throw new IOException("No image reader could decode the data - invalid image data");
+        }
+        
+        return decoded;
     }
     
     /**
@@ -151,6 +321,24 @@ public class IrisController {
         }
     }
     
+    /**
+     * LOW_QUALITY error carrying the individual quality scores
+     */
+    static class QualityErrorResponse extends ErrorResponse {
+        double focusScore;
+        double brightness;
+        double clippedFraction;
+        double glareFraction;
+        
+        QualityErrorResponse(ImageQuality.QualityResult quality) {
+            super("LOW_QUALITY", quality.reason);
+            this.focusScore = quality.focusScore;
+            this.brightness = quality.brightness;
+            this.clippedFraction = quality.clippedFraction;
+            this.glareFraction = quality.glareFraction;
+        }
+    }
+    
     /**
      * Extended iris data with eye detection confidence
      */
@@ -161,7 +349,35 @@ public class IrisController {
         int irisCenterX;
         int irisCenterY;
         int irisRadius;
+        double precisePupilCenterX;
+        double precisePupilCenterY;
+        double precisePupilRadius;
+        double preciseIrisCenterX;
+        double preciseIrisCenterY;
+        double preciseIrisRadius;
         double eyeConfidence;
+        boolean searchCompleted;
+        double searchCoverage;
+        boolean circlesFound;
+        
+        IrisDataWithConfidence(IrisDataWithConfidence other) {
+            this.pupilCenterX = other.pupilCenterX;
+            this.pupilCenterY = other.pupilCenterY;
+            this.pupilRadius = other.pupilRadius;
+            this.irisCenterX = other.irisCenterX;
+            this.irisCenterY = other.irisCenterY;
+            this.irisRadius = other.irisRadius;
+            this.precisePupilCenterX = other.precisePupilCenterX;
+            this.precisePupilCenterY = other.precisePupilCenterY;
+            this.precisePupilRadius = other.precisePupilRadius;
+            this.preciseIrisCenterX = other.preciseIrisCenterX;
+            this.preciseIrisCenterY = other.preciseIrisCenterY;
+            this.preciseIrisRadius = other.preciseIrisRadius;
+            this.eyeConfidence = other.eyeConfidence;
+            this.searchCompleted = other.searchCompleted;
+            this.searchCoverage = other.searchCoverage;
+            this.circlesFound = other.circlesFound;
+        }
         
         IrisDataWithConfidence(IrisData data, double confidence) {
             this.pupilCenterX = data.pupilCenterX;
@@ -170,7 +386,30 @@ public class IrisController {
             this.irisCenterX = data.irisCenterX;
             this.irisCenterY = data.irisCenterY;
             this.irisRadius = data.irisRadius;
+            this.precisePupilCenterX = data.precisePupilCenterX;
+            this.precisePupilCenterY = data.precisePupilCenterY;
+            this.precisePupilRadius = data.precisePupilRadius;
+            this.preciseIrisCenterX = data.preciseIrisCenterX;
+            this.preciseIrisCenterY = data.preciseIrisCenterY;
+            this.preciseIrisRadius = data.preciseIrisRadius;
             this.eyeConfidence = confidence;
+            this.searchCompleted = data.searchCompleted;
+            this.searchCoverage = data.searchCoverage;
+            this.circlesFound = data.circlesFound;
+        }
+    }
+    
+    /**
+     * Result for --locate-eyes: the strongest eye at the top level plus every eye found
+     */
+    static class MultiEyeResult extends IrisDataWithConfidence {
+        int eyeCount;
+        List<IrisDataWithConfidence> eyes;
+        
+        MultiEyeResult(List<IrisDataWithConfidence> eyes) {
+            super(eyes.get(0));
+            this.eyeCount = eyes.size();
+            this.eyes = eyes;
         }
     }
-}
\ No newline at end of file
+}
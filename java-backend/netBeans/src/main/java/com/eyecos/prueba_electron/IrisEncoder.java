@@ -0,0 +1,196 @@
+package com.eyecos.prueba_electron;
+
+import com.eyecos.prueba_electron.IrisNormalizer.NormalizedIris;
+
+/**
+ * Turns a normalized iris strip into an {@link IrisCode} by log-Gabor phase
+ * quantization.
+ *
+ * The strip is split into {@link IrisCode#ROWS} radial bands. Each band is averaged
+ * to one angular signal, filtered with a one-sided log-Gabor filter in the frequency
+ * domain (which yields the analytic, complex response directly) and sampled at
+ * {@link IrisCode#COLUMNS} angles. The signs of the real and imaginary parts give
+ * the two bits of each sample, i.e. the quadrant of the local phase.
+ *
+ * Samples outside the image, specular highlights and intensity outliers (eyelid
+ * skin, lashes) are masked. A code sample stays valid only when most of the strip
+ * under it was usable; masked strip samples are replaced by the band mean before
+ * filtering so they do not ring into their neighbours.
+ *
+ * The filter and FFT tables are built once per instance. Instances keep scratch
+ * buffers and are not thread-safe; use one per thread.
+ */
+public class IrisEncoder {
+
+    /** Filter center, in cycles around the iris. */
+    private static final double CENTER_CYCLES = 16;
+
+    /** Ratio of the filter's standard deviation to its center frequency, on a log scale. */
+    private static final double SIGMA_ON_F = 0.5;
+
+    /** Strip levels at or above this are treated as specular reflection. */
+    private static final int GLARE_LEVEL = 240;
+
+    /** Samples further than this many median absolute deviations from the median are occluders. */
+    private static final double OUTLIER_DEVIATIONS = 4;
+    private static final int MIN_OUTLIER_DISTANCE = 12;
+
+    private final int radialSamples;
+    private final int angularSamples;
+    private final Fft fft;
+    private final double[] filter;
+
+    private final double[] re;
+    private final double[] im;
+    private final int[] usable;
+    private final boolean[] occluded;
+
+    public IrisEncoder() {
+        this(IrisNormalizer.DEFAULT_RADIAL_SAMPLES, IrisNormalizer.DEFAULT_ANGULAR_SAMPLES);
+    }
+
+    /**
+     * Creates an encoder for strips of the given size. The angular sample count must
+     * be a power of two and a multiple of {@link IrisCode#COLUMNS}; the radial count
+     * must be at least {@link IrisCode#ROWS}.
+     */
+    public IrisEncoder(int radialSamples, int angularSamples) {
+        if (radialSamples < IrisCode.ROWS || angularSamples % IrisCode.COLUMNS != 0) {
+            throw new IllegalArgumentException("Strip of " + radialSamples + "x" + angularSamples
+                    + " cannot be encoded into " + IrisCode.ROWS + "x" + IrisCode.COLUMNS);
+        }
+        this.radialSamples = radialSamples;
+        this.angularSamples = angularSamples;
+        this.fft = new Fft(angularSamples);
+
+        // Positive frequencies only: the inverse transform is then the analytic signal
+        this.filter = new double[angularSamples];
+        double logSigma = Math.log(SIGMA_ON_F);
+        for (int k = 1; k <= angularSamples / 2; k++) {
+            double logRatio = Math.log(k / CENTER_CYCLES);
+            filter[k] = Math.exp(-(logRatio * logRatio) / (2 * logSigma * logSigma));
+        }
+
+        this.re = new double[angularSamples];
+        this.im = new double[angularSamples];
+        this.usable = new int[angularSamples];
+        this.occluded = new boolean[radialSamples * angularSamples];
+    }
+
+    public IrisCode encode(NormalizedIris strip) {
+        if (strip.radialSamples != radialSamples || strip.angularSamples != angularSamples) {
+            throw new IllegalArgumentException("Strip is " + strip.radialSamples + "x" + strip.angularSamples
+                    + ", encoder expects " + radialSamples + "x" + angularSamples);
+        }
+        markOccluded(strip);
+
+        long[] bits = new long[IrisCode.WORDS];
+        long[] mask = new long[IrisCode.WORDS];
+        int step = angularSamples / IrisCode.COLUMNS;
+
+        for (int row = 0; row < IrisCode.ROWS; row++) {
+            int firstRow = row * radialSamples / IrisCode.ROWS;
+            int lastRow = (row + 1) * radialSamples / IrisCode.ROWS;
+            int bandRows = lastRow - firstRow;
+
+            // Average the band into one angular signal
+            double bandTotal = 0;
+            int bandCount = 0;
+            for (int a = 0; a < angularSamples; a++) {
+                double total = 0;
+                int count = 0;
+                for (int r = firstRow; r < lastRow; r++) {
+                    int index = r * angularSamples + a;
+                    if (!occluded[index]) {
+                        total += strip.pixels[index] & 0xFF;
+                        count++;
+                    }
+                }
+                re[a] = count == 0 ? 0 : total / count;
+                usable[a] = count;
+                bandTotal += total;
+                bandCount += count;
+            }
+            if (bandCount == 0) {
+                continue;
+            }
+            double bandMean = bandTotal / bandCount;
+            for (int a = 0; a < angularSamples; a++) {
+                if (usable[a] == 0) {
+                    re[a] = bandMean;
+                }
+                im[a] = 0;
+            }
+
+            fft.transform(re, im, false);
+            for (int k = 0; k < angularSamples; k++) {
+                re[k] *= filter[k];
+                im[k] *= filter[k];
+            }
+            fft.transform(re, im, true);
+
+            for (int column = 0; column < IrisCode.COLUMNS; column++) {
+                int start = column * step;
+                int visible = 0;
+                for (int a = start; a < start + step; a++) {
+                    visible += usable[a];
+                }
+                if (2 * visible < step * bandRows) {
+                    continue;
+                }
+
+                int sample = start + step / 2;
+                int bit = 2 * (row * IrisCode.COLUMNS + column);
+                if (re[sample] >= 0) {
+                    bits[bit >>> 6] |= 1L << bit;
+                }
+                if (im[sample] >= 0) {
+                    bits[(bit + 1) >>> 6] |= 1L << (bit + 1);
+                }
+                mask[bit >>> 6] |= 3L << bit;
+            }
+        }
+
+        return new IrisCode(bits, mask);
+    }
+
+    /**
+     * Flags strip samples that are outside the image, saturated, or far from the
+     * typical iris level. The median and its absolute deviation come from histograms,
+     * so this stays linear in the strip size.
+     */
+    private void markOccluded(NormalizedIris strip) {
+        int[] histogram = new int[256];
+        int valid = 0;
+        for (int i = 0; i < strip.pixels.length; i++) {
+            if (strip.mask[i] != 0) {
+                histogram[strip.pixels[i] & 0xFF]++;
+                valid++;
+            }
+        }
+
+        int median = percentile(histogram, valid);
+        int[] deviations = new int[256];
+        for (int level = 0; level < 256; level++) {
+            deviations[Math.abs(level - median)] += histogram[level];
+        }
+        int spread = percentile(deviations, valid);
+        double limit = Math.max(MIN_OUTLIER_DISTANCE, OUTLIER_DEVIATIONS * spread);
+
+        for (int i = 0; i < strip.pixels.length; i++) {
+            int value = strip.pixels[i] & 0xFF;
+            occluded[i] = strip.mask[i] == 0 || value >= GLARE_LEVEL || Math.abs(value - median) > limit;
+        }
+    }
+
+    private static int percentile(int[] histogram, int total) {
+        int seen = 0;
+        for (int level = 0; level < histogram.length; level++) {
+            seen += histogram[level];
+            if (2 * seen >= total) {
+                return level;
+            }
+        }
+        return 0;
+    }
+}
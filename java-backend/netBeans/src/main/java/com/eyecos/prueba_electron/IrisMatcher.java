@@ -0,0 +1,265 @@
+package com.eyecos.prueba_electron;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Masked fractional Hamming distance between iris codes, and the parallel 1:N scan
+ * that galleries use for identification.
+ *
+ * Two codes are compared only on bits valid in both masks; the distance is the share
+ * of those bits that differ. Head tilt rotates the iris, which shifts the code along
+ * its columns, so the probe is tried at every shift within {@link MatchOptions#maxShift}
+ * and the smallest distance wins. All shifted probes are built once per search.
+ *
+ * A comparison stops as soon as it can no longer come in under its limit: with d
+ * disagreements so far and at most R valid bits left, the final distance is at least
+ * d / (n + R). Most impostors are rejected after a few bands.
+ */
+public final class IrisMatcher {
+
+    public static final double DEFAULT_THRESHOLD = 0.32;
+    public static final int DEFAULT_MAX_SHIFT = 8;
+
+    /** Pairs with fewer bits valid in both codes than this never match. */
+    public static final int MIN_COMPARED_BITS = 256;
+
+    /** Distance reported for pairs that were rejected or could not be compared. */
+    public static final double NO_MATCH = 1.0;
+
+    /** Gallery entries scanned per parallel task. */
+    private static final int CHUNK_SIZE = 2048;
+
+    /** How often (in entries) a task checks whether another task has accepted a match. */
+    private static final int STOP_CHECK_INTERVAL = 256;
+
+    public static class MatchOptions {
+        /** Largest distance reported as a candidate. */
+        public double threshold = DEFAULT_THRESHOLD;
+
+        /** Rotation tried in each direction, in code columns. */
+        public int maxShift = DEFAULT_MAX_SHIFT;
+
+        public int maxResults = 5;
+
+        /**
+         * A candidate at or below this distance ends the scan at once. Distances this
+         * low only occur for the same eye, so the rest of the gallery cannot do better
+         * in practice. Negative disables early acceptance.
+         */
+        public double acceptDistance = 0.2;
+
+        public boolean parallel = true;
+    }
+
+    public static class Candidate {
+        public final String subjectId;
+        public final double distance;
+        /** Rotation, in code columns, at which the probe matched best. */
+        public final int shift;
+
+        Candidate(String subjectId, double distance, int shift) {
+            this.subjectId = subjectId;
+            this.distance = distance;
+            this.shift = shift;
+        }
+    }
+
+    public static class IdentifyResult {
+        /** Candidates under the threshold, closest first. */
+        public final List<Candidate> candidates;
+        public final long scanned;
+        public final boolean acceptedEarly;
+
+        IdentifyResult(List<Candidate> candidates, long scanned, boolean acceptedEarly) {
+            this.candidates = candidates;
+            this.scanned = scanned;
+            this.acceptedEarly = acceptedEarly;
+        }
+
+        public Candidate best() {
+            return candidates.isEmpty() ? null : candidates.get(0);
+        }
+    }
+
+    /**
+     * A probe prepared for scanning: one rotated copy per shift, ordered from no
+     * rotation outwards so that a good match tightens the limit early, plus the
+     * number of valid probe bits from each word to the end.
+     */
+    static final class Probe {
+        final int[] shifts;
+        final long[][] bits;
+        final long[][] mask;
+        final int[][] validFrom;
+
+        Probe(IrisCode code, int maxShift) {
+            int count = 2 * Math.max(0, maxShift) + 1;
+            shifts = new int[count];
+            bits = new long[count][];
+            mask = new long[count][];
+            validFrom = new int[count][IrisCode.WORDS + 1];
+
+            for (int i = 0; i < count; i++) {
+                int shift = (i + 1) / 2 * (i % 2 == 0 ? -1 : 1);
+                IrisCode rotated = code.rotated(shift);
+                shifts[i] = shift;
+                bits[i] = rotated.bits;
+                mask[i] = rotated.mask;
+                for (int w = IrisCode.WORDS - 1; w >= 0; w--) {
+                    validFrom[i][w] = validFrom[i][w + 1] + Long.bitCount(rotated.mask[w]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Scores one gallery entry against the probe; returns {@link #NO_MATCH} if it
+     * cannot come in at or under {@code limit}, and stores the winning shift in
+     * {@code shiftOut[0]}.
+     */
+    @FunctionalInterface
+    interface EntryScorer {
+        double score(int entry, double limit, int[] shiftOut);
+    }
+
+    private IrisMatcher() {}
+
+    /** Best distance between two codes over the default rotation range. */
+    public static Candidate compare(IrisCode probe, IrisCode enrolled) {
+        return compare(probe, enrolled, DEFAULT_MAX_SHIFT);
+    }
+
+    public static Candidate compare(IrisCode probe, IrisCode enrolled, int maxShift) {
+        int[] shift = new int[1];
+        double distance = bestDistance(new Probe(probe, maxShift), enrolled.bits, enrolled.mask, 0,
+                NO_MATCH, shift);
+        return new Candidate(null, distance, shift[0]);
+    }
+
+    /**
+     * Smallest distance over all probe shifts to the code stored at
+     * {@code words[offset .. offset + WORDS)}, or {@link #NO_MATCH}.
+     */
+    static double bestDistance(Probe probe, long[] bits, long[] mask, int offset, double limit, int[] shiftOut) {
+        double best = NO_MATCH;
+        for (int i = 0; i < probe.shifts.length; i++) {
+            double distance = distance(probe.bits[i], probe.mask[i], probe.validFrom[i],
+                    bits, mask, offset, Math.min(limit, best));
+            if (distance < best) {
+                best = distance;
+                shiftOut[0] = probe.shifts[i];
+            }
+        }
+        return best;
+    }
+
+    private static double distance(long[] probeBits, long[] probeMask, int[] probeValidFrom,
+                                   long[] bits, long[] mask, int offset, double limit) {
+        int disagree = 0;
+        int compared = 0;
+        for (int band = 0; band < IrisCode.ROWS; band++) {
+            int end = (band + 1) * IrisCode.ROW_WORDS;
+            for (int w = band * IrisCode.ROW_WORDS; w < end; w++) {
+                long valid = probeMask[w] & mask[offset + w];
+                disagree += Long.bitCount((probeBits[w] ^ bits[offset + w]) & valid);
+                compared += Long.bitCount(valid);
+            }
+            if (disagree > limit * (compared + probeValidFrom[end])) {
+                return NO_MATCH;
+            }
+        }
+
+        if (compared < MIN_COMPARED_BITS) {
+            return NO_MATCH;
+        }
+        return (double) disagree / compared;
+    }
+
+    /**
+     * Scans entries {@code [0, size)} in chunks, in parallel when the options allow.
+     * Each task asks {@code scorers} for its own scorer, so scorers may keep scratch
+     * state; {@code ids} resolves an entry index to its subject id.
+     */
+    static IdentifyResult scan(int size, MatchOptions options, IntFunction<EntryScorer> scorers,
+                               IntFunction<String> ids) {
+        int maxResults = Math.max(1, options.maxResults);
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        AtomicBoolean accepted = new AtomicBoolean();
+
+        IntStream tasks = IntStream.range(0, chunks);
+        if (options.parallel && chunks > 1) {
+            tasks = tasks.parallel();
+        }
+        List<ChunkResult> results = tasks
+                .mapToObj(chunk -> scanChunk(chunk * CHUNK_SIZE, Math.min(size, (chunk + 1) * CHUNK_SIZE),
+                        options, maxResults, scorers.apply(chunk), ids, accepted))
+                .collect(Collectors.toList());
+
+        List<Candidate> candidates = new ArrayList<>();
+        long scanned = 0;
+        for (ChunkResult result : results) {
+            candidates.addAll(result.candidates);
+            scanned += result.scanned;
+        }
+        candidates.sort(Comparator.comparingDouble(candidate -> candidate.distance));
+        if (candidates.size() > maxResults) {
+            candidates = new ArrayList<>(candidates.subList(0, maxResults));
+        }
+        return new IdentifyResult(Collections.unmodifiableList(candidates), scanned, accepted.get());
+    }
+
+    private static class ChunkResult {
+        final List<Candidate> candidates;
+        final long scanned;
+
+        ChunkResult(List<Candidate> candidates, long scanned) {
+            this.candidates = candidates;
+            this.scanned = scanned;
+        }
+    }
+
+    private static ChunkResult scanChunk(int from, int to, MatchOptions options, int maxResults,
+                                         EntryScorer scorer, IntFunction<String> ids, AtomicBoolean accepted) {
+        // Closest first; once full, the worst kept candidate bounds every later comparison
+        List<Candidate> kept = new ArrayList<>(maxResults + 1);
+        int[] shift = new int[1];
+        long scanned = 0;
+
+        for (int entry = from; entry < to; entry++) {
+            if ((entry - from) % STOP_CHECK_INTERVAL == 0 && accepted.get()) {
+                break;
+            }
+
+            double limit = kept.size() < maxResults
+                    ? options.threshold
+                    : Math.min(options.threshold, kept.get(kept.size() - 1).distance);
+            double distance = scorer.score(entry, limit, shift);
+            scanned++;
+            if (distance > limit || distance >= NO_MATCH) {
+                continue;
+            }
+
+            int position = kept.size();
+            while (position > 0 && kept.get(position - 1).distance > distance) {
+                position--;
+            }
+            kept.add(position, new Candidate(ids.apply(entry), distance, shift[0]));
+            if (kept.size() > maxResults) {
+                kept.remove(kept.size() - 1);
+            }
+
+            if (distance <= options.acceptDistance) {
+                accepted.set(true);
+                break;
+            }
+        }
+        return new ChunkResult(kept, scanned);
+    }
+}
@@ -0,0 +1,195 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+
+/**
+ * Daugman rubber-sheet normalization: unwraps the annulus between the pupil and
+ * iris circles into a fixed-size polar strip, one row per radius and one column
+ * per angle.
+ *
+ * Each column runs in a straight line from the pupil boundary to the iris boundary
+ * at that angle, so the strip stays correct when the two circles are not concentric
+ * and when the pupil dilates. Angle and radius tables are built once per instance;
+ * per frame only the two boundary points of each angle are computed, and every
+ * sample is a linear blend of them followed by a bilinear lookup. No trigonometry
+ * runs per sample and nothing is allocated once the patch buffer has grown to the
+ * iris size, so an instance can normalize every frame of a tracking stream.
+ *
+ * Instances keep scratch buffers and are not thread-safe; use one per thread.
+ */
+public class IrisNormalizer {
+
+    public static final int DEFAULT_RADIAL_SAMPLES = 64;
+    public static final int DEFAULT_ANGULAR_SAMPLES = 512;
+
+    /**
+     * A normalized iris strip. {@code pixels[r * angularSamples + a]} is the gray
+     * level at radius step r (0 on the pupil boundary) and angle step a (0 pointing
+     * right, increasing clockwise on screen). {@code mask} is 1 where the sample
+     * fell inside the image and 0 where it did not.
+     */
+    public static class NormalizedIris {
+        public final int radialSamples;
+        public final int angularSamples;
+        public final byte[] pixels;
+        public final byte[] mask;
+
+        public NormalizedIris(int radialSamples, int angularSamples) {
+            this.radialSamples = radialSamples;
+            this.angularSamples = angularSamples;
+            this.pixels = new byte[radialSamples * angularSamples];
+            this.mask = new byte[radialSamples * angularSamples];
+        }
+    }
+
+    private final int radialSamples;
+    private final int angularSamples;
+    private final float[] cos;
+    private final float[] sin;
+    private final float[] radial;
+
+    // Per-frame boundary points, one per angle
+    private final float[] innerX;
+    private final float[] innerY;
+    private final float[] outerX;
+    private final float[] outerY;
+
+    // Grayscale copy of the iris bounding box, grown on demand
+    private byte[] patch = new byte[0];
+    private int[] row = new int[0];
+
+    public IrisNormalizer() {
+        this(DEFAULT_RADIAL_SAMPLES, DEFAULT_ANGULAR_SAMPLES);
+    }
+
+    public IrisNormalizer(int radialSamples, int angularSamples) {
+        if (radialSamples < 2 || angularSamples < 1) {
+            throw new IllegalArgumentException("Need at least 2 radial and 1 angular sample");
+        }
+        this.radialSamples = radialSamples;
+        this.angularSamples = angularSamples;
+
+        this.cos = new float[angularSamples];
+        this.sin = new float[angularSamples];
+        for (int a = 0; a < angularSamples; a++) {
+            double angle = 2 * Math.PI * a / angularSamples;
+            cos[a] = (float) Math.cos(angle);
+            sin[a] = (float) Math.sin(angle);
+        }
+
+        // Sample ring centers, so neither boundary itself is sampled
+        this.radial = new float[radialSamples];
+        for (int r = 0; r < radialSamples; r++) {
+            radial[r] = (r + 0.5f) / radialSamples;
+        }
+
+        this.innerX = new float[angularSamples];
+        this.innerY = new float[angularSamples];
+        this.outerX = new float[angularSamples];
+        this.outerY = new float[angularSamples];
+    }
+
+    public NormalizedIris createBuffer() {
+        return new NormalizedIris(radialSamples, angularSamples);
+    }
+
+    /**
+     * The image rectangle sampled for these circles, before clipping to the image:
+     * the iris bounding box, grown to cover a pupil that pokes out of it and the
+     * pixels bilinear interpolation reads around the edge.
+     */
+    public static Rectangle sampledBounds(IrisData circles) {
+        int extent = (int) Math.ceil(Math.max(
+                circles.preciseIrisRadius + Math.abs(circles.preciseIrisCenterX - circles.precisePupilCenterX),
+                circles.preciseIrisRadius + Math.abs(circles.preciseIrisCenterY - circles.precisePupilCenterY))) + 2;
+        int minX = (int) Math.floor(circles.preciseIrisCenterX) - extent;
+        int minY = (int) Math.floor(circles.preciseIrisCenterY) - extent;
+        int maxX = (int) Math.ceil(circles.preciseIrisCenterX) + extent + 1;
+        int maxY = (int) Math.ceil(circles.preciseIrisCenterY) + extent + 1;
+        return new Rectangle(minX, minY, maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Normalizes the iris of {@code image}, whose circles are given in the image's own
+     * pixel coordinates. Only the iris bounding box is converted to grayscale.
+     */
+    public void normalize(BufferedImage image, IrisData circles, NormalizedIris out) {
+        Rectangle bounds = sampledBounds(circles);
+        int minX = Math.max(0, bounds.x);
+        int minY = Math.max(0, bounds.y);
+        int maxX = Math.min(image.getWidth(), bounds.x + bounds.width);
+        int maxY = Math.min(image.getHeight(), bounds.y + bounds.height);
+        int width = Math.max(0, maxX - minX);
+        int height = Math.max(0, maxY - minY);
+
+        if (patch.length < width * height) {
+            patch = new byte[width * height];
+        }
+        if (row.length < width) {
+            row = new int[width];
+        }
+        IrisSegmentation.convertToGrayscale(image, minX, minY, width, height, patch, row);
+
+        normalize(patch, width, height, minX, minY, circles, out);
+    }
+
+    /**
+     * Normalizes from a grayscale buffer covering the image rectangle that starts at
+     * (originX, originY) and is {@code width} x {@code height} pixels; the circles are
+     * in full-image coordinates.
+     */
+    public void normalize(byte[] gray, int width, int height, int originX, int originY,
+                          IrisData circles, NormalizedIris out) {
+        if (out.radialSamples != radialSamples || out.angularSamples != angularSamples) {
+            throw new IllegalArgumentException("Buffer is " + out.radialSamples + "x" + out.angularSamples
+                    + ", normalizer produces " + radialSamples + "x" + angularSamples);
+        }
+
+        float pupilX = (float) (circles.precisePupilCenterX - originX);
+        float pupilY = (float) (circles.precisePupilCenterY - originY);
+        float pupilRadius = (float) circles.precisePupilRadius;
+        float irisX = (float) (circles.preciseIrisCenterX - originX);
+        float irisY = (float) (circles.preciseIrisCenterY - originY);
+        float irisRadius = (float) circles.preciseIrisRadius;
+
+        for (int a = 0; a < angularSamples; a++) {
+            innerX[a] = pupilX + pupilRadius * cos[a];
+            innerY[a] = pupilY + pupilRadius * sin[a];
+            outerX[a] = irisX + irisRadius * cos[a];
+            outerY[a] = irisY + irisRadius * sin[a];
+        }
+
+        byte[] pixels = out.pixels;
+        byte[] mask = out.mask;
+        for (int r = 0; r < radialSamples; r++) {
+            float t = radial[r];
+            int offset = r * angularSamples;
+
+            for (int a = 0; a < angularSamples; a++) {
+                float x = innerX[a] + t * (outerX[a] - innerX[a]);
+                float y = innerY[a] + t * (outerY[a] - innerY[a]);
+
+                int x0 = (int) Math.floor(x);
+                int y0 = (int) Math.floor(y);
+                if (x0 < 0 || y0 < 0 || x0 + 1 >= width || y0 + 1 >= height) {
+                    pixels[offset + a] = 0;
+                    mask[offset + a] = 0;
+                    continue;
+                }
+
+                float fx = x - x0;
+                float fy = y - y0;
+                int index = y0 * width + x0;
+                float top = (gray[index] & 0xFF) + fx * ((gray[index + 1] & 0xFF) - (gray[index] & 0xFF));
+                float bottom = (gray[index + width] & 0xFF)
+                        + fx * ((gray[index + width + 1] & 0xFF) - (gray[index + width] & 0xFF));
+
+                pixels[offset + a] = (byte) (int) (top + fy * (bottom - top) + 0.5f);
+                mask[offset + a] = 1;
+            }
+        }
+    }
+}
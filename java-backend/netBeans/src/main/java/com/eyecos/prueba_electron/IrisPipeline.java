@@ -0,0 +1,92 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.eyecos.prueba_electron.EyeDetector.EyeDetectionResult;
+import com.eyecos.prueba_electron.EyeLocator.EyeRegion;
+import com.eyecos.prueba_electron.IrisNormalizer.NormalizedIris;
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.IrisSegmentation.SearchHints;
+import com.eyecos.prueba_electron.IrisSegmentation.SegmentationOptions;
+
+/**
+ * Processing steps shared by the CLI and web controllers.
+ */
+public class IrisPipeline {
+
+    private static final ThreadLocal<IrisNormalizer> NORMALIZERS = ThreadLocal.withInitial(IrisNormalizer::new);
+    private static final ThreadLocal<IrisEncoder> ENCODERS = ThreadLocal.withInitial(IrisEncoder::new);
+    private static final ThreadLocal<NormalizedIris> STRIPS =
+            ThreadLocal.withInitial(() -> NORMALIZERS.get().createBuffer());
+
+    public static class EyeResult {
+        public final IrisData irisData;
+        public final double confidence;
+        public final EyeRegion region;
+
+        EyeResult(IrisData irisData, double confidence, EyeRegion region) {
+            this.irisData = irisData;
+            this.confidence = confidence;
+            this.region = region;
+        }
+    }
+
+    /**
+     * Normalizes and encodes the iris between the segmented circles into a matching
+     * template, sampling {@code image} at its own resolution. {@code circles} must be
+     * in the coordinates of {@code image}.
+     */
+    public static IrisCode encodeIris(BufferedImage image, IrisData circles) {
+        NormalizedIris strip = STRIPS.get();
+        NORMALIZERS.get().normalize(image, circles, strip);
+        return ENCODERS.get().encode(strip);
+    }
+
+    /**
+     * Localizes up to {@code maxEyes} eye regions, runs eye detection and the quality
+     * gate on each crop and segments the crops that pass. Circles are returned in the coordinates of
+     * {@code image}, strongest region first; the list is empty if nothing passed.
+     * Any crop in {@code options.hints} is ignored here; apply it before locating.
+     */
+    public static List<EyeResult> segmentLocatedEyes(BufferedImage image, int maxEyes,
+                                                     int resolution, SegmentationOptions options) {
+        List<EyeResult> eyes = new ArrayList<>();
+
+        for (EyeRegion region : EyeLocator.locateEyes(image, maxEyes)) {
+            BufferedImage crop = image.getSubimage(region.x, region.y, region.size, region.size);
+
+            EyeDetectionResult detection = EyeDetector.detectEye(crop);
+            if (!detection.isEye || !ImageQuality.assess(crop).acceptable) {
+                continue;
+            }
+
+            IrisData data = IrisSegmentation.segmentIris(crop, resolution, cropOptions(options, region));
+            eyes.add(new EyeResult(data.transformed(1.0, region.x, region.y), detection.confidence, region));
+        }
+
+        return eyes;
+    }
+
+    /**
+     * Moves search hints into the crop's frame. A hinted pupil center only applies to
+     * the crop that contains it; radius hints apply to every eye.
+     */
+    private static SegmentationOptions cropOptions(SegmentationOptions options, EyeRegion region) {
+        if (options.hints == null) {
+            return options;
+        }
+
+        SearchHints local = options.hints.toLocal(1.0, region.x, region.y);
+        if (local.pupilCenter != null
+                && !new Rectangle(0, 0, region.size, region.size).contains(local.pupilCenter)) {
+            local.pupilCenter = null;
+        }
+
+        SegmentationOptions cropped = options.copy();
+        cropped.hints = local;
+        return cropped;
+    }
+}
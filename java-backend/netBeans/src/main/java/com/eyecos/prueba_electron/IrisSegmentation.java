@@ -4,11 +4,16 @@ import java.awt.image.BufferedImage;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 
 public class IrisSegmentation {
 
-    private static final int RADIUS_SEARCH_STEP = 1;
-    private static final int POINT_SEARCH_STEP = 1;
     private static final int ANGULAR_SAMPLES = 72; // 5-degree intervals
 
     private static final double[] COS_TABLE = new double[ANGULAR_SAMPLES];
@@ -29,6 +34,17 @@ public class IrisSegmentation {
         public int irisCenterX;
         public int irisCenterY;
         public int irisRadius;
+        // Sub-pixel estimates in original image coordinates; the int fields are these rounded
+        public double precisePupilCenterX;
+        public double precisePupilCenterY;
+        public double precisePupilRadius;
+        public double preciseIrisCenterX;
+        public double preciseIrisCenterY;
+        public double preciseIrisRadius;
+        public boolean searchCompleted = true;
+        public double searchCoverage = 1.0;
+        // False when the deadline passed before any circle was scored; the circles are then all zero
+        public boolean circlesFound = true;
 
         public IrisData(int pupilCenterX, int pupilCenterY, int pupilRadius,
                         int irisCenterX, int irisCenterY, int irisRadius) {
@@ -38,30 +54,358 @@ public class IrisSegmentation {
             this.irisCenterX = irisCenterX;
             this.irisCenterY = irisCenterY;
             this.irisRadius = irisRadius;
+            this.precisePupilCenterX = pupilCenterX;
+            this.precisePupilCenterY = pupilCenterY;
+            this.precisePupilRadius = pupilRadius;
+            this.preciseIrisCenterX = irisCenterX;
+            this.preciseIrisCenterY = irisCenterY;
+            this.preciseIrisRadius = irisRadius;
+        }
+
+        public IrisData(double pupilCenterX, double pupilCenterY, double pupilRadius,
+                        double irisCenterX, double irisCenterY, double irisRadius) {
+            this((int) Math.round(pupilCenterX), (int) Math.round(pupilCenterY), (int) Math.round(pupilRadius),
+                 (int) Math.round(irisCenterX), (int) Math.round(irisCenterY), (int) Math.round(irisRadius));
+            this.precisePupilCenterX = pupilCenterX;
+            this.precisePupilCenterY = pupilCenterY;
+            this.precisePupilRadius = pupilRadius;
+            this.preciseIrisCenterX = irisCenterX;
+            this.preciseIrisCenterY = irisCenterY;
+            this.preciseIrisRadius = irisRadius;
+        }
+
+        /** The result of a search whose deadline passed before any circle was scored. */
+        static IrisData notFound(double coverage) {
+            IrisData result = new IrisData(0, 0, 0, 0, 0, 0);
+            result.searchCompleted = false;
+            result.searchCoverage = coverage;
+            result.circlesFound = false;
+            return result;
+        }
+
+        /**
+         * The same circles in another coordinate frame: positions are scaled and then
+         * shifted by (offsetX, offsetY), radii are scaled.
+         */
+        public IrisData transformed(double scale, double offsetX, double offsetY) {
+            if (!circlesFound) {
+                return notFound(searchCoverage);
+            }
+            IrisData result = new IrisData(
+                    offsetX + precisePupilCenterX * scale,
+                    offsetY + precisePupilCenterY * scale,
+                    precisePupilRadius * scale,
+                    offsetX + preciseIrisCenterX * scale,
+                    offsetY + preciseIrisCenterY * scale,
+                    preciseIrisRadius * scale);
+            result.searchCompleted = searchCompleted;
+            result.searchCoverage = searchCoverage;
+            return result;
+        }
+    }
+
+    public enum SearchMode {
+        /** Score every (cx, cy, r) candidate in full. */
+        EXHAUSTIVE,
+        /**
+         * Visit candidates best-first and abandon any candidate whose partial score
+         * provably cannot beat the best one found so far. Returns the same circles
+         * as {@link #EXHAUSTIVE}.
+         */
+        PRUNED,
+        /**
+         * Score all centers of one radius at once as an FFT correlation of the gradient
+         * image with a ring kernel. Pays off at larger working resolutions; scores agree
+         * with {@link #EXHAUSTIVE} up to floating-point rounding.
+         */
+        FFT;
+
+        public static SearchMode parse(String name) {
+            for (SearchMode mode : values()) {
+                if (mode.name().equalsIgnoreCase(name)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("Unknown search mode: " + name);
+        }
+    }
+
+    /**
+     * Where the engines look, in working-image pixels: the window of candidate
+     * centers and the radius range for each circle.
+     */
+    public static class SearchRegion {
+        public int minX;
+        public int maxX;
+        public int minY;
+        public int maxY;
+        public int pupilMinRadius;
+        public int pupilMaxRadius;
+        public int irisMinRadius;
+        public int irisMaxRadius;
+
+        /** The eye is assumed to sit in the central +-width/4 of the square crop. */
+        public static SearchRegion defaultFor(int width) {
+            SearchRegion region = new SearchRegion();
+            int center = width / 2;
+            int searchRadius = width / 4;
+            region.minX = center - searchRadius;
+            region.maxX = center + searchRadius;
+            region.minY = center - searchRadius;
+            region.maxY = center + searchRadius;
+            region.pupilMinRadius = width / 10;
+            region.pupilMaxRadius = width / 6;
+            region.irisMinRadius = width / 10;
+            region.irisMaxRadius = width / 4;
+            return region;
+        }
+
+        /**
+         * The default region narrowed by client hints given in working-resolution
+         * coordinates: the center window shrinks to the hinted pupil center plus or
+         * minus the tolerance, and hinted radius ranges replace the defaults.
+         */
+        public static SearchRegion forHints(int width, SearchHints hints) {
+            SearchRegion region = defaultFor(width);
+            if (hints == null) {
+                return region;
+            }
+
+            if (hints.pupilCenter != null) {
+                int tolerance = hints.centerTolerance > 0
+                        ? (int) Math.ceil(hints.centerTolerance)
+                        : Math.max(2, width / 20);
+                int cx = (int) Math.round(hints.pupilCenter.x);
+                int cy = (int) Math.round(hints.pupilCenter.y);
+                region.minX = clamp(cx - tolerance, 0, width - 1);
+                region.maxX = clamp(cx + tolerance, region.minX, width - 1);
+                region.minY = clamp(cy - tolerance, 0, width - 1);
+                region.maxY = clamp(cy + tolerance, region.minY, width - 1);
+            }
+
+            if (hints.pupilMaxRadius > 0) {
+                region.pupilMinRadius = clamp((int) Math.floor(hints.pupilMinRadius), 1, width / 2);
+                region.pupilMaxRadius = clamp((int) Math.ceil(hints.pupilMaxRadius), region.pupilMinRadius, width / 2);
+            }
+            if (hints.irisMaxRadius > 0) {
+                region.irisMinRadius = clamp((int) Math.floor(hints.irisMinRadius), 1, width / 2);
+                region.irisMaxRadius = clamp((int) Math.ceil(hints.irisMaxRadius), region.irisMinRadius, width / 2);
+            }
+            return region;
+        }
+
+        private static int clamp(int value, int min, int max) {
+            return Math.max(min, Math.min(max, value));
+        }
+
+        public long candidateCount(int minRadius, int maxRadius) {
+            return CandidateSearch.candidateCount(minX, maxX, minY, maxY, minRadius, maxRadius);
+        }
+    }
+
+    /**
+     * Where the client believes the eye is, e.g. from a previous result or a capture
+     * overlay. Every field is optional (null or zero means "no hint"). Coordinates
+     * and radii are in pixels of the image being segmented.
+     */
+    public static class SearchHints {
+        /**
+         * Only this part of the image is segmented. Without the other hints the default
+         * region applies to the crop, so leave a margin of about an iris radius.
+         */
+        public Rectangle crop;
+
+        /** Approximate pupil center; pupil and iris centers are searched around it. */
+        public Point2D.Double pupilCenter;
+
+        /** How far from {@link #pupilCenter} to search; defaults to 1/20 of the image side. */
+        public double centerTolerance;
+
+        public double pupilMinRadius;
+        public double pupilMaxRadius;
+        public double irisMinRadius;
+        public double irisMaxRadius;
+
+        /**
+         * Rejects hints that cannot describe a search: non-positive crop sizes,
+         * negative values and inverted radius ranges.
+         */
+        public void validate() {
+            if (crop != null && (crop.width <= 0 || crop.height <= 0)) {
+                throw new IllegalArgumentException("Crop width and height must be positive");
+            }
+            if (centerTolerance < 0) {
+                throw new IllegalArgumentException("Center tolerance must not be negative");
+            }
+            validateRange("Pupil", pupilMinRadius, pupilMaxRadius);
+            validateRange("Iris", irisMinRadius, irisMaxRadius);
+        }
+
+        private static void validateRange(String name, double min, double max) {
+            if (min < 0 || max < 0) {
+                throw new IllegalArgumentException(name + " radius range must not be negative");
+            }
+            if (min > 0 && max == 0) {
+                throw new IllegalArgumentException(name + " radius range needs a maximum");
+            }
+            if (max > 0 && min > max) {
+                throw new IllegalArgumentException(name + " minimum radius exceeds the maximum");
+            }
+        }
+
+        /**
+         * The same hints in a frame where a point p of this frame lands at
+         * (p - offset) / scale, the inverse of {@link IrisData#transformed}. The crop
+         * is dropped: callers use this once the crop has been applied.
+         */
+        public SearchHints toLocal(double scale, double offsetX, double offsetY) {
+            SearchHints local = new SearchHints();
+            if (pupilCenter != null) {
+                local.pupilCenter = new Point2D.Double((pupilCenter.x - offsetX) / scale,
+                                                       (pupilCenter.y - offsetY) / scale);
+            }
+            local.centerTolerance = centerTolerance / scale;
+            local.pupilMinRadius = pupilMinRadius / scale;
+            local.pupilMaxRadius = pupilMaxRadius / scale;
+            local.irisMinRadius = irisMinRadius / scale;
+            local.irisMaxRadius = irisMaxRadius / scale;
+            return local;
+        }
+    }
+
+    /**
+     * Optional knobs for {@link #segmentIris(BufferedImage, int, SegmentationOptions)}.
+     */
+    public static class SegmentationOptions {
+        /**
+         * Time budget for the circle search in milliseconds. When positive the search
+         * runs coarse-to-fine and returns the best circles found once the budget is
+         * spent; zero or negative means search exhaustively.
+         *
+         * The budget also covers scaling to the working resolution and the blur and
+         * gradient passes. Those cannot be interrupted, only checked between, so they
+         * are a floor on the response time (around 10-30 ms at 256 pixels). If the budget
+         * runs out before any circle is scored, the result has
+         * {@link IrisData#circlesFound} false.
+         */
+        public long deadlineMillis;
+
+        /** Defaults to the {@code iris.engine} system property, else Daugman. */
+        public SegmentationEngine engine = SegmentationEngine.forName(System.getProperty("iris.engine", "daugman"));
+
+        /**
+         * How the Daugman engine visits candidates. Defaults to the
+         * {@code iris.searchMode} system property, else exhaustive.
+         */
+        public SearchMode searchMode = SearchMode.parse(System.getProperty("iris.searchMode", "exhaustive"));
+
+        /**
+         * Fit a quadratic to the score surface around each integer optimum and report
+         * fractional centers and radii.
+         */
+        public boolean refineSubpixel = true;
+
+        /**
+         * Let the Daugman engine search for the pupil only around the darkest blobs,
+         * falling back to the whole window when they do not pan out. Defaults to the
+         * {@code iris.seedPupil} system property, else off.
+         */
+        public boolean seedPupil = Boolean.parseBoolean(System.getProperty("iris.seedPupil", "false"));
+
+        /** Optional client hints that narrow the search; null searches the default region. */
+        public SearchHints hints;
+
+        public SegmentationOptions copy() {
+            SegmentationOptions copy = new SegmentationOptions();
+            copy.deadlineMillis = deadlineMillis;
+            copy.engine = engine;
+            copy.searchMode = searchMode;
+            copy.refineSubpixel = refineSubpixel;
+            copy.seedPupil = seedPupil;
+            copy.hints = hints;
+            return copy;
         }
     }
 
     public static IrisData segmentIris(BufferedImage inputImage, int resolution) {
-        int originalResolution = inputImage.getWidth();
+        return segmentIris(inputImage, resolution, new SegmentationOptions());
+    }
+
+    public static IrisData segmentIris(BufferedImage inputImage, int resolution,
+                                       SegmentationOptions options) {
+        return segmentIris(inputImage, resolution, options, System.nanoTime());
+    }
+
+    /** {@code startNanos} is when the deadline budget started, so cropping counts against it. */
+    private static IrisData segmentIris(BufferedImage inputImage, int resolution,
+                                        SegmentationOptions options, long startNanos) {
+        SearchHints hints = options.hints;
+        if (hints != null && hints.crop != null) {
+            Rectangle crop = hints.crop.intersection(
+                    new Rectangle(0, 0, inputImage.getWidth(), inputImage.getHeight()));
+            if (crop.isEmpty()) {
+                throw new IllegalArgumentException("Crop lies outside the image");
+            }
+            SegmentationOptions cropped = options.copy();
+            cropped.hints = hints.toLocal(1.0, crop.x, crop.y);
+            IrisData data = segmentIris(inputImage.getSubimage(crop.x, crop.y, crop.width, crop.height),
+                                        resolution, cropped, startNanos);
+            return data.transformed(1.0, crop.x, crop.y);
+        }
+
+        // resizeToSquare scales the longer side to the resolution and centers the image
+        int longestSide = Math.max(inputImage.getWidth(), inputImage.getHeight());
+        float squareScale = (float) resolution / longestSide;
+        int padX = (resolution - Math.round(inputImage.getWidth() * squareScale)) / 2;
+        int padY = (resolution - Math.round(inputImage.getHeight() * squareScale)) / 2;
+        double scale = (double) longestSide / resolution;
+
+        long deadlineNanos = options.deadlineMillis > 0
+                ? startNanos + options.deadlineMillis * 1_000_000L
+                : SegmentationEngine.NO_DEADLINE;
 
         BufferedImage scaledImage = resizeToSquare(inputImage, resolution);
+        if (deadlinePassed(deadlineNanos)) {
+            return IrisData.notFound(0);
+        }
 
         byte[] grayPixels = convertToGrayscale(scaledImage);
         byte[] blurredPixels = applyGaussianBlur(grayPixels);
+        if (deadlinePassed(deadlineNanos)) {
+            return IrisData.notFound(0);
+        }
 
-        int[] pupilData = findPupil(blurredPixels);
-        int[] irisData = findIris(blurredPixels);
-
-        float scale = (float)originalResolution / resolution;
+        SearchRegion region = SearchRegion.forHints(resolution,
+                hints == null ? null : hints.toLocal(scale, -padX * scale, -padY * scale));
 
-        return new IrisData(
-                Math.round(pupilData[0] * scale),
-                Math.round(pupilData[1] * scale),
-                Math.round(pupilData[2] * scale),
-                Math.round(irisData[0] * scale),
-                Math.round(irisData[1] * scale),
-                Math.round(irisData[2] * scale)
+        SegmentationEngine.Circles circles =
+                options.engine.findCircles(blurredPixels, resolution, region, options, deadlineNanos);
+        if (!circles.found) {
+            return IrisData.notFound(circles.coverage);
+        }
+        int[] pupilData = circles.pupil;
+        int[] irisData = circles.iris;
+
+        double[] pupil = options.refineSubpixel
+                ? refineCircle(blurredPixels, pupilData) : toDouble(pupilData);
+        double[] iris = options.refineSubpixel
+                ? refineCircle(blurredPixels, irisData) : toDouble(irisData);
+
+        IrisData result = new IrisData(
+                (pupil[0] - padX) * scale,
+                (pupil[1] - padY) * scale,
+                pupil[2] * scale,
+                (iris[0] - padX) * scale,
+                (iris[1] - padY) * scale,
+                iris[2] * scale
         );
+        result.searchCompleted = circles.completed;
+        result.searchCoverage = circles.coverage;
+        return result;
+    }
+
+    static boolean deadlinePassed(long deadlineNanos) {
+        return deadlineNanos != SegmentationEngine.NO_DEADLINE && System.nanoTime() - deadlineNanos > 0;
     }
 
     public static BufferedImage resizeToSquare(BufferedImage original, int size) {
@@ -94,16 +438,71 @@ public class IrisSegmentation {
         int width = original.getWidth();
         int height = original.getHeight();
         byte[] grayscaleBytes = new byte[width * height];
+        convertToGrayscale(original, 0, 0, width, height, grayscaleBytes, new int[width]);
+        return grayscaleBytes;
+    }
+
+    /**
+     * Writes the gray levels of a rectangle of {@code image} into {@code dest}, row by
+     * row. The common decoder layouts (packed int RGB and interleaved BGR bytes) are
+     * read straight from the raster; anything else goes through one getRGB call per
+     * row using {@code row} (at least {@code width} long) as scratch space. The result
+     * is identical either way.
+     */
+    static void convertToGrayscale(BufferedImage image, int x0, int y0, int width, int height,
+                                   byte[] dest, int[] row) {
+        WritableRaster raster = image.getRaster();
+        int rasterX = x0 - raster.getSampleModelTranslateX();
+        int rasterY = y0 - raster.getSampleModelTranslateY();
+        int type = image.getType();
+
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            DataBufferInt buffer = (DataBufferInt) raster.getDataBuffer();
+            SinglePixelPackedSampleModel model = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            int[] data = buffer.getData();
+            for (int y = 0; y < height; y++) {
+                int source = buffer.getOffset() + model.getOffset(rasterX, rasterY + y);
+                for (int x = 0; x < width; x++) {
+                    int rgb = data[source + x];
+                    dest[y * width + x] = (byte) (int) (0.299 * ((rgb >> 16) & 0xFF)
+                            + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF));
+                }
+            }
+            return;
+        }
+
+        if (type == BufferedImage.TYPE_3BYTE_BGR
+                && raster.getDataBuffer() instanceof DataBufferByte
+                && raster.getSampleModel() instanceof PixelInterleavedSampleModel) {
+            DataBufferByte buffer = (DataBufferByte) raster.getDataBuffer();
+            PixelInterleavedSampleModel model = (PixelInterleavedSampleModel) raster.getSampleModel();
+            byte[] data = buffer.getData();
+            int pixelStride = model.getPixelStride();
+            int stride = model.getScanlineStride();
+            int[] bands = model.getBandOffsets();
+            for (int y = 0; y < height; y++) {
+                int source = buffer.getOffset() + (rasterY + y) * stride + rasterX * pixelStride;
+                for (int x = 0; x < width; x++) {
+                    int red = data[source + bands[0]] & 0xFF;
+                    int green = data[source + bands[1]] & 0xFF;
+                    int blue = data[source + bands[2]] & 0xFF;
+                    dest[y * width + x] = (byte) (int) (0.299 * red + 0.587 * green + 0.114 * blue);
+                    source += pixelStride;
+                }
+            }
+            return;
+        }
 
         for (int y = 0; y < height; y++) {
+            image.getRGB(x0, y0 + y, width, 1, row, 0, width);
             for (int x = 0; x < width; x++) {
-                Color color = new Color(original.getRGB(x, y));
-                int gray = (int) (0.299 * color.getRed() + 0.587 * color.getGreen() + 0.114 * color.getBlue());
-                grayscaleBytes[y * width + x] = (byte) gray;
+                int rgb = row[x];
+                dest[y * width + x] = (byte) (int) (0.299 * ((rgb >> 16) & 0xFF)
+                        + 0.587 * ((rgb >> 8) & 0xFF) + 0.114 * (rgb & 0xFF));
             }
         }
-
-        return grayscaleBytes;
     }
 
     private static byte[] applyGaussianBlur(byte[] pixels) {
@@ -151,49 +550,161 @@ public class IrisSegmentation {
         return result;
     }
 
-    private static int[] findPupil(byte[] pixels) {
-        int minRadius = (int) Math.sqrt(pixels.length) / 10;
-        int maxRadius = (int) Math.sqrt(pixels.length) / 6;
+    /**
+     * Refines an integer (cx, cy, r) optimum by least-squares fitting a full quadratic
+     * (including the center/radius cross terms) to the 3x3x3 neighbourhood of scores
+     * and moving to its vertex. The step is limited to one grid cell per axis; if the
+     * surface is not concave there the integer optimum is returned unchanged.
+     */
+    private static double[] refineCircle(byte[] pixels, int[] circle) {
+        double[] f = new double[27];
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    f[(dz + 1) * 9 + (dy + 1) * 3 + (dx + 1)] =
+                            calculateDaugmanScore(pixels, circle[0] + dx, circle[1] + dy, circle[2] + dz);
+                }
+            }
+        }
 
-        return daugmanOperator(pixels, minRadius, maxRadius);
+        // On a full 3-level grid the quadratic basis is orthogonal once the squared
+        // terms are centred, so each coefficient is a single weighted sum.
+        double gx = 0, gy = 0, gz = 0;
+        double axx = 0, ayy = 0, azz = 0;
+        double bxy = 0, bxz = 0, byz = 0;
+        for (int dz = -1; dz <= 1; dz++) {
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    double v = f[(dz + 1) * 9 + (dy + 1) * 3 + (dx + 1)];
+                    gx += v * dx;
+                    gy += v * dy;
+                    gz += v * dz;
+                    axx += v * (dx * dx - 2.0 / 3);
+                    ayy += v * (dy * dy - 2.0 / 3);
+                    azz += v * (dz * dz - 2.0 / 3);
+                    bxy += v * dx * dy;
+                    bxz += v * dx * dz;
+                    byz += v * dy * dz;
+                }
+            }
+        }
+        gx /= 18; gy /= 18; gz /= 18;
+        axx /= 6; ayy /= 6; azz /= 6;
+        bxy /= 12; bxz /= 12; byz /= 12;
+
+        // Hessian of the fitted quadratic; the vertex solves H * d = -g
+        double h11 = 2 * axx, h22 = 2 * ayy, h33 = 2 * azz;
+        double h12 = bxy, h13 = bxz, h23 = byz;
+
+        double minor2 = h11 * h22 - h12 * h12;
+        double det = h11 * (h22 * h33 - h23 * h23)
+                   - h12 * (h12 * h33 - h23 * h13)
+                   + h13 * (h12 * h23 - h22 * h13);
+
+        if (!(h11 < 0 && minor2 > 0 && det < 0)) {
+            return toDouble(circle);
+        }
+
+        double dx = (-gx * (h22 * h33 - h23 * h23)
+                     + h12 * (gy * h33 - h23 * gz)
+                     - h13 * (gy * h23 - h22 * gz)) / det;
+        double dy = (h11 * (-gy * h33 + gz * h23)
+                     + gx * (h12 * h33 - h23 * h13)
+                     + h13 * (h12 * -gz + gy * h13)) / det;
+        double dz = (h11 * (h22 * -gz + h23 * gy)
+                     - h12 * (h12 * -gz + gy * h13)
+                     - gx * (h12 * h23 - h22 * h13)) / det;
+
+        return new double[] {
+                circle[0] + clampStep(dx),
+                circle[1] + clampStep(dy),
+                circle[2] + clampStep(dz)
+        };
     }
 
-    private static int[] findIris(byte[] pixels) {
-        int minRadius = (int) Math.sqrt(pixels.length) / 10;
-        int maxRadius = (int) Math.sqrt(pixels.length) / 4;
+    private static double clampStep(double step) {
+        return Math.max(-1.0, Math.min(1.0, step));
+    }
 
-        return daugmanOperator(pixels, minRadius, maxRadius);
+    private static double[] toDouble(int[] circle) {
+        return new double[] { circle[0], circle[1], circle[2] };
     }
 
-    private static int[] daugmanOperator(byte[] pixels, int minRadius, int maxRadius) {
-        int width = (int) Math.sqrt(pixels.length);
-        int center = width/2;
-        int bestCenterX = center;
-        int bestCenterY = center;
-        int bestRadius = minRadius;
-        double maxScore = -1;
-
-        int searchRadius = width/4;
-
-        for (int cy = center - searchRadius; cy <= center + searchRadius; cy += POINT_SEARCH_STEP) {
-            for (int cx = center - searchRadius; cx <= center + searchRadius; cx += POINT_SEARCH_STEP) {
-                for (int r = minRadius; r <= maxRadius; r += RADIUS_SEARCH_STEP) {
-                    double score = calculateDaugmanScore(pixels, cx, cy, r);
-
-                    if (score > maxScore) {
-                        maxScore = score;
-                        bestCenterX = cx;
-                        bestCenterY = cy;
-                        bestRadius = r;
-                    }
+    /**
+     * The (dx, dy) pixel offsets, interleaved, at which {@link #calculateDaugmanScore}
+     * samples a ring of the given radius around a center at (reference, reference).
+     */
+    static int[] ringOffsets(int reference, int radius) {
+        int[] offsets = new int[ANGULAR_SAMPLES * 2];
+        for (int i = 0; i < ANGULAR_SAMPLES; i++) {
+            offsets[2 * i] = (int) (reference + radius * COS_TABLE[i]) - reference;
+            offsets[2 * i + 1] = (int) (reference + radius * SIN_TABLE[i]) - reference;
+        }
+        return offsets;
+    }
+
+    /**
+     * Same value as {@link #calculateDaugmanScore} but reads precomputed gradients and,
+     * every few samples, bounds the best score the circle could still reach by
+     * assuming all remaining samples hit the strongest gradient in the image. Returns
+     * {@code Double.NEGATIVE_INFINITY} as soon as that bound falls below
+     * {@code threshold}.
+     */
+    static double calculateBoundedScore(GradientField gradients,
+                                        int centerX, int centerY, int radius, double threshold) {
+        int width = gradients.width;
+        double[] magnitude = gradients.magnitude;
+        double score = 0;
+        int validPoints = 0;
+
+        for (int i = 0; i < ANGULAR_SAMPLES; i++) {
+            int x = (int) (centerX + radius * COS_TABLE[i]);
+            int y = (int) (centerY + radius * SIN_TABLE[i]);
+
+            if (x >= 2 && x < width - 2 && y >= 2 && y < width - 2) {
+                double gradient = magnitude[y * width + x];
+
+                if (gradient > 0){
+                    score += gradient;
+                    validPoints++;
                 }
             }
+
+            if ((i & 7) == 7 && threshold > 0) {
+                int remaining = ANGULAR_SAMPLES - 1 - i;
+                int reachable = validPoints + remaining;
+                if (reachable == 0) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+
+                double bound = (score + remaining * gradients.maxMagnitude) / reachable;
+                double coverageRatio = (double) reachable / ANGULAR_SAMPLES;
+                if (coverageRatio < 0.75) {
+                    bound *= coverageRatio;
+                }
+
+                // Small slack so rounding never prunes a candidate that would tie
+                if (bound * (1 + 1e-9) < threshold) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+
+        if (validPoints > 0) {
+            score /= validPoints;
+
+            double coverageRatio = (double) validPoints / ANGULAR_SAMPLES;
+            if (coverageRatio < 0.75) {
+                score *= coverageRatio;
+            }
+        } else {
+            return 0;
         }
 
-        return new int[] { bestCenterX, bestCenterY, bestRadius };
+        return score;
     }
 
-    private static double calculateDaugmanScore(byte[] pixels,
+    static double calculateDaugmanScore(byte[] pixels,
                                                 int centerX, int centerY, int radius) {
         int width = (int) Math.sqrt(pixels.length);
         double score = 0;
@@ -250,65 +761,18 @@ public class IrisSegmentation {
         return segmentIris(inputImage, 256);
     }
 
+    /**
+     * Copy of {@code original} with the pupil and iris circles drawn on it; the
+     * original is left untouched. See {@link OverlayRenderer} for drawing in place.
+     */
     public static BufferedImage drawSegmentation(BufferedImage original, IrisData data) {
-        int width  = original.getWidth();
-        int height = original.getHeight();
-
-        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage result = new BufferedImage(original.getWidth(), original.getHeight(),
+                                                 BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = result.createGraphics();
         g.drawImage(original, 0, 0, null);
         g.dispose();
 
-        int[] pixels = result.getRGB(0, 0, width, height, null, 0, width);
-
-        drawCircle(pixels, width, height,
-                   data.pupilCenterX, data.pupilCenterY,
-                   data.pupilRadius, Color.GREEN.getRGB());
-        drawCircle(pixels, width, height,
-                   data.irisCenterX, data.irisCenterY,
-                   data.irisRadius, Color.RED.getRGB());
-
-        result.setRGB(0, 0, width, height, pixels, 0, width);
-
+        OverlayRenderer.drawInPlace(result, data);
         return result;
     }
-
-    private static void drawCircle(int[] pixels, int width, int height,
-                                   int centerX, int centerY, int radius, int color) {
-        drawSingleCircle(pixels, width, height, centerX, centerY, radius - 1, color);
-        drawSingleCircle(pixels, width, height, centerX, centerY, radius, color);
-        drawSingleCircle(pixels, width, height, centerX, centerY, radius + 1, color);
-    }
-
-    private static void drawSingleCircle(int[] pixels, int width, int height,
-                                         int centerX, int centerY, int radius, int color) {
-        int x = 0;
-        int y = radius;
-        int d = 3 - 2 * radius;
-
-        while (y >= x) {
-            setPixelSafe(pixels, width, height, centerX + x, centerY + y, color);
-            setPixelSafe(pixels, width, height, centerX + y, centerY + x, color);
-            setPixelSafe(pixels, width, height, centerX - y, centerY + x, color);
-            setPixelSafe(pixels, width, height, centerX - x, centerY + y, color);
-            setPixelSafe(pixels, width, height, centerX - x, centerY - y, color);
-            setPixelSafe(pixels, width, height, centerX - y, centerY - x, color);
-            setPixelSafe(pixels, width, height, centerX + y, centerY - x, color);
-            setPixelSafe(pixels, width, height, centerX + x, centerY - y, color);
-
-            if (d < 0) {
-                d = d + 4 * x + 6;
-            } else {
-                d = d + 4 * (x - y) + 10;
-                y--;
-            }
-            x++;
-        }
-    }
-
-    private static void setPixelSafe(int[] pixels, int width, int height, int x, int y, int color) {
-        if (x >= 0 && x < width && y >= 0 && y < height) {
-            pixels[y * width + x] = color;
-        }
-    }
-}
\ No newline at end of file
+}
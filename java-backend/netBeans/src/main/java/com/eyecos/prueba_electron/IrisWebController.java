@@ -5,15 +5,26 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.annotation.PreDestroy;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Base64;
-import javax.imageio.ImageIO;
+import java.util.List;
+import java.util.Map;
 
 import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.ImageDecoder.DecodedImage;
 import com.eyecos.prueba_electron.EyeDetector.EyeDetectionResult;
 
 @SpringBootApplication
@@ -21,16 +32,57 @@ import com.eyecos.prueba_electron.EyeDetector.EyeDetectionResult;
 @RequestMapping("/api")
 public class IrisWebController {
 
+    private static final int DEFAULT_MAX_EYES = 2;
+    private static final int MAX_IDENTIFY_RESULTS = 100;
+
+    private final TemplateGallery gallery = openGallery();
+
     public static void main(String[] args) {
         SpringApplication.run(IrisWebController.class, args);
         System.out.println("Iris Segmentation Web Server started on http://localhost:8080");
     }
 
+    /**
+     * The gallery lives in the file named by the iris.gallery.path system property
+     * when it is set, and only in memory otherwise
+     */
+    private static TemplateGallery openGallery() {
+        String path = System.getProperty("iris.gallery.path");
+        if (path == null || path.isEmpty()) {
+            return new InMemoryGallery();
+        }
+        try {
+            long start = System.nanoTime();
+            MappedGallery gallery = MappedGallery.open(Paths.get(path));
+            System.out.println("Opened template gallery " + path + " with " + gallery.size() + " subjects in "
+                             + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms");
+            return gallery;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open template gallery " + path, e);
+        }
+    }
+
+    /**
+     * Closes a file-backed gallery on shutdown so its checkpoint is written and the
+     * next start does not have to replay the recent appends
+     */
+    @PreDestroy
+    public void closeGallery() throws IOException {
+        if (gallery instanceof Closeable) {
+            ((Closeable) gallery).close();
+        }
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> healthCheck() {
         return ResponseEntity.ok("Iris Segmentation Server is running!");
     }
 
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Object>> metrics() {
+        return ResponseEntity.ok(Metrics.snapshot());
+    }
+
     @PostMapping("/process-base64")
     public ResponseEntity<?> processImageFromBase64(@RequestBody ImageRequest request) {
         try {
@@ -42,25 +94,48 @@ public class IrisWebController {
                     .body(new ErrorResponse("MISSING_DATA", "Image data is required"));
             }
 
+            IrisSegmentation.SegmentationOptions options;
+            IrisSegmentation.SearchHints hints;
+            try {
+                options = segmentationOptions(request.getDeadlineMs(), request.getSearchMode(),
+                                              request.getEngine());
+                hints = request.getHints() == null ? null : request.getHints().toSearchHints();
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+
             // Remove the data URL prefix if present
-            if (base64Data.startsWith("data:image")) {
-                String[] parts = base64Data.split(",");
-                if (parts.length > 1) {
-                    base64Data = parts[1];
-                } else {
-                    return ResponseEntity.badRequest()
-                        .body(new ErrorResponse("INVALID_FORMAT", "Invalid base64 image format"));
-                }
+            base64Data = stripDataUrlPrefix(base64Data);
+            if (base64Data == null) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_FORMAT", "Invalid base64 image format"));
             }
 
-            // Convert base64 string to BufferedImage
-            BufferedImage image = decodeBase64Image(base64Data);
-            if (image == null) {
+            // Convert base64 string to BufferedImage, subsampled towards the working size
+            DecodedImage decoded;
+            try {
+                decoded = decodeBase64Image(base64Data, hints);
+            } catch (ImageDecoder.ImageTooLargeException e) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse("IMAGE_TOO_LARGE", e.getMessage()));
+            } catch (ImageDecoder.InvalidRegionException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+            if (decoded == null) {
                 return ResponseEntity.badRequest()
                     .body(new ErrorResponse("DECODE_FAILED", "Failed to decode image from base64 data"));
             }
+            BufferedImage image = decoded.image;
+            options.hints = decoded.toDecodedHints(hints);
+
+            System.out.println("Processing image with dimensions: " + decoded.sourceWidth + "x" + decoded.sourceHeight
+                             + " (decoded at " + image.getWidth() + "x" + image.getHeight() + ")");
 
-            System.out.println("Processing image with dimensions: " + image.getWidth() + "x" + image.getHeight());
+            if (Boolean.TRUE.equals(request.getLocateEyes())) {
+                return processLocatedEyes(decoded, request.getMaxEyes(), options);
+            }
             
             // Perform eye detection first
             System.out.println("Performing eye detection...");
@@ -74,8 +149,15 @@ public class IrisWebController {
             
             System.out.println("Eye detected with confidence: " + eyeDetection.confidence);
             
+            // Reject blurred or badly exposed captures before the expensive search
+            ImageQuality.QualityResult quality = ImageQuality.assess(image);
+            if (!quality.acceptable) {
+                System.out.println("Image rejected - " + quality.reason);
+                return ResponseEntity.ok(new QualityErrorResponse(quality));
+            }
+            
             // Process the image using iris segmentation
-            IrisData irisData = IrisSegmentation.segmentIris(image);
+            IrisData irisData = decoded.toSourceCoordinates(IrisSegmentation.segmentIris(image, 256, options));
             
             System.out.println("Processing completed successfully");
             System.out.println("Pupil: center(" + irisData.pupilCenterX + "," + irisData.pupilCenterY + 
@@ -98,7 +180,13 @@ public class IrisWebController {
     }
 
     @PostMapping("/process-file")
-    public ResponseEntity<?> processImageFromFile(@RequestParam("image") MultipartFile file) {
+    public ResponseEntity<?> processImageFromFile(@RequestParam("image") MultipartFile file,
+            @RequestParam(value = "deadlineMs", required = false) Long deadlineMs,
+            @RequestParam(value = "searchMode", required = false) String searchMode,
+            @RequestParam(value = "engine", required = false) String engine,
+            @RequestParam(value = "locateEyes", required = false) Boolean locateEyes,
+            @RequestParam(value = "maxEyes", required = false) Integer maxEyes,
+            SearchHintsRequest hintParams) {
         try {
             if (file.isEmpty()) {
                 return ResponseEntity.badRequest()
@@ -111,14 +199,40 @@ public class IrisWebController {
                     .body(new ErrorResponse("NOT_IMAGE", "File must be an image"));
             }
 
+            IrisSegmentation.SegmentationOptions options;
+            IrisSegmentation.SearchHints hints;
+            try {
+                options = segmentationOptions(deadlineMs, searchMode, engine);
+                hints = hintParams == null ? null : hintParams.toSearchHints();
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+
             System.out.println("Received file upload: " + file.getOriginalFilename() + 
                              " (" + file.getSize() + " bytes, " + contentType + ")");
 
-            BufferedImage image = ImageIO.read(file.getInputStream());
-            if (image == null) {
+            DecodedImage decoded;
+            try (InputStream input = file.getInputStream()) {
+                decoded = ImageDecoder.decode(input, ImageDecoder.DEFAULT_TARGET_SIZE, ImageDecoder.DEFAULT_MAX_PIXELS,
+                                              hints == null ? null : hints.crop);
+            } catch (ImageDecoder.ImageTooLargeException e) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse("IMAGE_TOO_LARGE", e.getMessage()));
+            } catch (ImageDecoder.InvalidRegionException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+            if (decoded == null) {
                 return ResponseEntity.badRequest()
                     .body(new ErrorResponse("READ_FAILED", "Failed to read image file"));
             }
+            BufferedImage image = decoded.image;
+            options.hints = decoded.toDecodedHints(hints);
+
+            if (Boolean.TRUE.equals(locateEyes)) {
+                return processLocatedEyes(decoded, maxEyes, options);
+            }
 
             // Perform eye detection
             EyeDetectionResult eyeDetection = EyeDetector.detectEye(image);
@@ -128,9 +242,15 @@ public class IrisWebController {
                     "Image does not appear to contain an eye. " + eyeDetection.reason));
             }
 
+            ImageQuality.QualityResult quality = ImageQuality.assess(image);
+            if (!quality.acceptable) {
+                return ResponseEntity.ok(new QualityErrorResponse(quality));
+            }
+
             // Process the image
-            System.out.println("Processing uploaded image with dimensions: " + image.getWidth() + "x" + image.getHeight());
-            IrisData irisData = IrisSegmentation.segmentIris(image);
+            System.out.println("Processing uploaded image with dimensions: " + decoded.sourceWidth + "x"
+                             + decoded.sourceHeight + " (decoded at " + image.getWidth() + "x" + image.getHeight() + ")");
+            IrisData irisData = decoded.toSourceCoordinates(IrisSegmentation.segmentIris(image, 256, options));
             
             IrisResponseWithConfidence response = new IrisResponseWithConfidence(irisData, eyeDetection.confidence);
             
@@ -149,24 +269,430 @@ public class IrisWebController {
         }
     }
 
-    private BufferedImage decodeBase64Image(String base64Data) {
+    @PostMapping("/enroll")
+    public ResponseEntity<?> enroll(@RequestBody EnrollRequest request) {
         try {
-            byte[] imageBytes = Base64.getDecoder().decode(base64Data);
-            ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
-            return ImageIO.read(bis);
+            String subjectId = request.getSubjectId();
+            if (subjectId == null || subjectId.trim().isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("MISSING_SUBJECT", "subjectId is required"));
+            }
+
+            TemplateExtraction extraction = extractTemplate(request);
+            if (extraction.error != null) {
+                return extraction.error;
+            }
+
+            try {
+                gallery.enroll(subjectId, extraction.code);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_SUBJECT", e.getMessage()));
+            }
+            Metrics.increment("gallery.enrolled");
+            System.out.println("Enrolled subject " + subjectId + " (" + extraction.code.validBits() + " valid bits, "
+                             + gallery.size() + " in gallery)");
+
+            return ResponseEntity.ok(new EnrollResponse(extraction, subjectId, gallery.size()));
+
+        } catch (Exception e) {
+            System.err.println("Error enrolling subject: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse("PROCESSING_ERROR", "Error enrolling subject: " + e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/enroll/{subjectId}")
+    public ResponseEntity<?> unenroll(@PathVariable("subjectId") String subjectId) {
+        if (!gallery.remove(subjectId)) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(new ErrorResponse("UNKNOWN_SUBJECT", "Subject is not enrolled: " + subjectId));
+        }
+        Metrics.increment("gallery.removed");
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Drops deleted templates from a file-backed gallery; in-memory galleries are
+     * always compact
+     */
+    @PostMapping("/gallery/compact")
+    public ResponseEntity<?> compactGallery() {
+        if (!(gallery instanceof MappedGallery)) {
+            return ResponseEntity.ok(new CompactResponse(0, gallery.size()));
+        }
+        try {
+            long start = System.nanoTime();
+            int reclaimed = ((MappedGallery) gallery).compact();
+            System.out.println("Compacted template gallery: " + reclaimed + " records reclaimed in "
+                             + String.format("%.1f", (System.nanoTime() - start) / 1e6) + " ms");
+            return ResponseEntity.ok(new CompactResponse(reclaimed, gallery.size()));
+        } catch (IOException e) {
+            System.err.println("Error compacting gallery: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse("IO_ERROR", "Error compacting gallery: " + e.getMessage()));
+        }
+    }
+
+    @PostMapping("/identify")
+    public ResponseEntity<?> identify(@RequestBody IdentifyRequest request) {
+        try {
+            IrisMatcher.MatchOptions matchOptions = new IrisMatcher.MatchOptions();
+            if (request.getThreshold() != null) {
+                if (!(request.getThreshold() > 0 && request.getThreshold() <= 1)) {
+                    return ResponseEntity.badRequest()
+                        .body(new ErrorResponse("INVALID_OPTIONS", "threshold must be in (0, 1]"));
+                }
+                matchOptions.threshold = request.getThreshold();
+                matchOptions.acceptDistance = Math.min(matchOptions.acceptDistance, matchOptions.threshold);
+            }
+            if (request.getMaxResults() != null) {
+                if (request.getMaxResults() < 1 || request.getMaxResults() > MAX_IDENTIFY_RESULTS) {
+                    return ResponseEntity.badRequest()
+                        .body(new ErrorResponse("INVALID_OPTIONS", "maxResults must be between 1 and "
+                                                + MAX_IDENTIFY_RESULTS));
+                }
+                matchOptions.maxResults = request.getMaxResults();
+            }
+
+            TemplateExtraction extraction = extractTemplate(request);
+            if (extraction.error != null) {
+                return extraction.error;
+            }
+
+            long start = System.nanoTime();
+            IrisMatcher.IdentifyResult result = gallery.identify(extraction.code, matchOptions);
+            double searchMillis = (System.nanoTime() - start) / 1e6;
+
+            Metrics.record("gallery.identify.ms", searchMillis);
+            Metrics.increment(result.best() != null ? "gallery.identify.matched" : "gallery.identify.unmatched");
+            System.out.println("Identification scanned " + result.scanned + " templates in "
+                             + String.format("%.1f", searchMillis) + " ms: "
+                             + (result.best() != null ? "matched " + result.best().subjectId : "no match"));
+
+            return ResponseEntity.ok(new IdentifyResponse(extraction, result, gallery.size(), searchMillis));
+
+        } catch (Exception e) {
+            System.err.println("Error identifying subject: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse("PROCESSING_ERROR", "Error identifying subject: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Template of the single eye in a base64 request, or the error response to send
+     * instead
+     */
+    private static class TemplateExtraction {
+        IrisData irisData;
+        double confidence;
+        IrisCode code;
+        ResponseEntity<?> error;
+
+        static TemplateExtraction failed(ResponseEntity<?> error) {
+            TemplateExtraction extraction = new TemplateExtraction();
+            extraction.error = error;
+            return extraction;
+        }
+    }
+
+    /**
+     * Decodes, checks and segments the request image like /process-base64 does, then
+     * encodes the iris from the source pixels (see encodeAtSourceResolution)
+     */
+    private TemplateExtraction extractTemplate(ImageRequest request) throws IOException {
+        String base64Data = request.getImageData();
+        if (base64Data == null || base64Data.trim().isEmpty()) {
+            return TemplateExtraction.failed(ResponseEntity.badRequest()
+                .body(new ErrorResponse("MISSING_DATA", "Image data is required")));
+        }
+
+        IrisSegmentation.SegmentationOptions options;
+        IrisSegmentation.SearchHints hints;
+        try {
+            options = segmentationOptions(request.getDeadlineMs(), request.getSearchMode(), request.getEngine());
+            hints = request.getHints() == null ? null : request.getHints().toSearchHints();
+        } catch (IllegalArgumentException e) {
+            return TemplateExtraction.failed(ResponseEntity.badRequest()
+                .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage())));
+        }
+
+        base64Data = stripDataUrlPrefix(base64Data);
+        if (base64Data == null) {
+            return TemplateExtraction.failed(ResponseEntity.badRequest()
+                .body(new ErrorResponse("INVALID_FORMAT", "Invalid base64 image format")));
+        }
+
+        byte[] imageBytes = decodeBase64(base64Data);
+        DecodedImage decoded;
+        try {
+            decoded = imageBytes == null ? null : decodeImageBytes(imageBytes, hints);
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            return TemplateExtraction.failed(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .body(new ErrorResponse("IMAGE_TOO_LARGE", e.getMessage())));
+        } catch (ImageDecoder.InvalidRegionException e) {
+            return TemplateExtraction.failed(ResponseEntity.badRequest()
+                .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage())));
+        }
+        if (decoded == null) {
+            return TemplateExtraction.failed(ResponseEntity.badRequest()
+                .body(new ErrorResponse("DECODE_FAILED", "Failed to decode image from base64 data")));
+        }
+        BufferedImage image = decoded.image;
+        options.hints = decoded.toDecodedHints(hints);
+
+        EyeDetectionResult eyeDetection = EyeDetector.detectEye(image);
+        if (!eyeDetection.isEye) {
+            return TemplateExtraction.failed(ResponseEntity.ok(new ErrorResponse("NOT_AN_EYE",
+                "Image does not appear to contain an eye. " + eyeDetection.reason)));
+        }
+
+        ImageQuality.QualityResult quality = ImageQuality.assess(image);
+        if (!quality.acceptable) {
+            return TemplateExtraction.failed(ResponseEntity.ok(new QualityErrorResponse(quality)));
+        }
+
+        IrisData circles = IrisSegmentation.segmentIris(image, 256, options);
+        if (!circles.circlesFound) {
+            return TemplateExtraction.failed(ResponseEntity.ok(new ErrorResponse("DEADLINE_EXCEEDED",
+                "The deadline passed before any circle was found")));
+        }
+        IrisCode code = encodeAtSourceResolution(imageBytes, decoded, circles);
+        if (code.validBits() < IrisMatcher.MIN_COMPARED_BITS) {
+            return TemplateExtraction.failed(ResponseEntity.ok(new ErrorResponse("IRIS_OCCLUDED",
+                "Too little of the iris is visible to build a template (" + code.validBits() + " valid bits)")));
+        }
+
+        TemplateExtraction extraction = new TemplateExtraction();
+        extraction.irisData = decoded.toSourceCoordinates(circles);
+        extraction.confidence = eyeDetection.confidence;
+        extraction.code = code;
+        return extraction;
+    }
+
+    /**
+     * Segments an uploaded image and returns it with the circles drawn on, as JPEG
+     * (default) or PNG. The overlay is drawn on the decoded image, at most
+     * ImageDecoder.DEFAULT_TARGET_SIZE on its longest side, or smaller with maxSize.
+     * Errors come back as JSON exactly like /process-file.
+     */
+    @PostMapping("/overlay")
+    public ResponseEntity<?> overlay(@RequestParam("image") MultipartFile file,
+            @RequestParam(value = "deadlineMs", required = false) Long deadlineMs,
+            @RequestParam(value = "searchMode", required = false) String searchMode,
+            @RequestParam(value = "engine", required = false) String engine,
+            @RequestParam(value = "locateEyes", required = false) Boolean locateEyes,
+            @RequestParam(value = "maxEyes", required = false) Integer maxEyes,
+            @RequestParam(value = "format", required = false) String format,
+            @RequestParam(value = "maxSize", required = false) Integer maxSize,
+            SearchHintsRequest hintParams) {
+        try {
+            if (file.isEmpty()) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("NO_FILE", "No file uploaded"));
+            }
+
+            IrisSegmentation.SegmentationOptions options;
+            IrisSegmentation.SearchHints hints;
+            OverlayRenderer.Format overlayFormat;
+            try {
+                options = segmentationOptions(deadlineMs, searchMode, engine);
+                hints = hintParams == null ? null : hintParams.toSearchHints();
+                overlayFormat = format == null || format.isEmpty()
+                        ? OverlayRenderer.Format.JPEG : OverlayRenderer.Format.parse(format);
+                if (maxSize != null && maxSize < 1) {
+                    throw new IllegalArgumentException("maxSize must be positive");
+                }
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+
+            DecodedImage decoded;
+            try (InputStream input = file.getInputStream()) {
+                decoded = ImageDecoder.decode(input, ImageDecoder.DEFAULT_TARGET_SIZE, ImageDecoder.DEFAULT_MAX_PIXELS,
+                                              hints == null ? null : hints.crop);
+            } catch (ImageDecoder.ImageTooLargeException e) {
+                return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body(new ErrorResponse("IMAGE_TOO_LARGE", e.getMessage()));
+            } catch (ImageDecoder.InvalidRegionException e) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("INVALID_OPTIONS", e.getMessage()));
+            }
+            if (decoded == null) {
+                return ResponseEntity.badRequest()
+                    .body(new ErrorResponse("READ_FAILED", "Failed to read image file"));
+            }
+            BufferedImage image = decoded.image;
+            options.hints = decoded.toDecodedHints(hints);
+
+            List<IrisData> circles = new ArrayList<>();
+            if (Boolean.TRUE.equals(locateEyes)) {
+                int limit = maxEyes != null && maxEyes > 0 ? maxEyes : DEFAULT_MAX_EYES;
+                for (IrisPipeline.EyeResult eye : IrisPipeline.segmentLocatedEyes(image, limit, 256, options)) {
+                    circles.add(eye.irisData);
+                }
+                if (circles.isEmpty()) {
+                    return ResponseEntity.ok(new ErrorResponse("NOT_AN_EYE",
+                        "No eye regions were found in the image"));
+                }
+            } else {
+                EyeDetectionResult eyeDetection = EyeDetector.detectEye(image);
+                if (!eyeDetection.isEye) {
+                    return ResponseEntity.ok(new ErrorResponse("NOT_AN_EYE",
+                        "Image does not appear to contain an eye. " + eyeDetection.reason));
+                }
+                ImageQuality.QualityResult quality = ImageQuality.assess(image);
+                if (!quality.acceptable) {
+                    return ResponseEntity.ok(new QualityErrorResponse(quality));
+                }
+                circles.add(IrisSegmentation.segmentIris(image, 256, options));
+            }
+
+            // The decoded image is ours, so it is drawn on directly unless it must be scaled or converted
+            BufferedImage canvas = OverlayRenderer.prepare(image, maxSize == null ? 0 : maxSize, overlayFormat);
+            double scale = (double) canvas.getWidth() / image.getWidth();
+            for (IrisData data : circles) {
+                if (data.circlesFound) {
+                    OverlayRenderer.drawInPlace(canvas, scale == 1.0 ? data : data.transformed(scale, 0, 0));
+                }
+            }
+
+            System.out.println("Rendering " + overlayFormat.formatName + " overlay of " + file.getOriginalFilename()
+                             + " at " + canvas.getWidth() + "x" + canvas.getHeight());
+            StreamingResponseBody body = output -> OverlayRenderer.write(canvas, overlayFormat,
+                    OverlayRenderer.DEFAULT_JPEG_QUALITY, output);
+            return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(overlayFormat.mimeType))
+                .header("X-Eye-Count", String.valueOf(circles.size()))
+                .body(body);
+
+        } catch (IOException e) {
+            System.err.println("IO Error rendering overlay: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse("IO_ERROR", "Error reading image file: " + e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Error rendering overlay: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(new ErrorResponse("PROCESSING_ERROR", "Error rendering overlay: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Face / wide-shot path: find candidate eye regions first and segment each crop
+     */
+    private ResponseEntity<?> processLocatedEyes(DecodedImage decoded, Integer maxEyes,
+                                                 IrisSegmentation.SegmentationOptions options) {
+        int limit = maxEyes != null && maxEyes > 0 ? maxEyes : DEFAULT_MAX_EYES;
+        System.out.println("Locating up to " + limit + " eye regions...");
+
+        List<IrisPipeline.EyeResult> eyes = IrisPipeline.segmentLocatedEyes(decoded.image, limit, 256, options);
+        if (eyes.isEmpty()) {
+            System.out.println("Image rejected - no eye regions found");
+            return ResponseEntity.ok(new ErrorResponse("NOT_AN_EYE",
+                "No eye regions were found in the image"));
+        }
+
+        List<IrisResponseWithConfidence> responses = new ArrayList<>();
+        for (IrisPipeline.EyeResult eye : eyes) {
+            responses.add(new IrisResponseWithConfidence(decoded.toSourceCoordinates(eye.irisData), eye.confidence));
+        }
+
+        System.out.println("Segmented " + responses.size() + " eye(s)");
+        return ResponseEntity.ok(new MultiEyeResponse(responses));
+    }
+
+    private static IrisSegmentation.SegmentationOptions segmentationOptions(Long deadlineMs, String searchMode,
+                                                                            String engine) {
+        IrisSegmentation.SegmentationOptions options = new IrisSegmentation.SegmentationOptions();
+        if (deadlineMs != null) {
+            options.deadlineMillis = deadlineMs;
+        }
+        if (searchMode != null && !searchMode.isEmpty()) {
+            options.searchMode = IrisSegmentation.SearchMode.parse(searchMode);
+        }
+        if (engine != null && !engine.isEmpty()) {
+            options.engine = SegmentationEngine.forName(engine);
+        }
+        return options;
+    }
+
+    /**
+     * Returns the base64 payload without any "data:image/...;base64," prefix, or null
+     * if the prefix is there but the payload is not.
+     */
+    private static String stripDataUrlPrefix(String base64Data) {
+        if (!base64Data.startsWith("data:image")) {
+            return base64Data;
+        }
+        String[] parts = base64Data.split(",");
+        return parts.length > 1 ? parts[1] : null;
+    }
+
+    private DecodedImage decodeBase64Image(String base64Data, IrisSegmentation.SearchHints hints)
+            throws ImageDecoder.ImageTooLargeException {
+        byte[] imageBytes = decodeBase64(base64Data);
+        return imageBytes == null ? null : decodeImageBytes(imageBytes, hints);
+    }
+
+    private byte[] decodeBase64(String base64Data) {
+        try {
+            return Base64.getDecoder().decode(base64Data);
         } catch (IllegalArgumentException e) {
             System.err.println("Invalid base64 data: " + e.getMessage());
             return null;
+        }
+    }
+
+    private DecodedImage decodeImageBytes(byte[] imageBytes, IrisSegmentation.SearchHints hints)
+            throws ImageDecoder.ImageTooLargeException {
+        try {
+            ByteArrayInputStream bis = new ByteArrayInputStream(imageBytes);
+            return ImageDecoder.decode(bis, ImageDecoder.DEFAULT_TARGET_SIZE, ImageDecoder.DEFAULT_MAX_PIXELS,
+                                       hints == null ? null : hints.crop);
+        } catch (ImageDecoder.ImageTooLargeException e) {
+            throw e;
         } catch (IOException e) {
             System.err.println("Error reading image from base64 data: " + e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Encodes the iris from the source pixels. Segmentation only needs the image
+     * subsampled to ImageDecoder.DEFAULT_TARGET_SIZE, but the template would lose the
+     * fine texture that subsampling drops, so when the upload was subsampled just the
+     * iris region is read again at full resolution for the normalizer
+     */
+    private static IrisCode encodeAtSourceResolution(byte[] imageBytes, DecodedImage decoded, IrisData circles)
+            throws IOException {
+        if (decoded.subsampling == 1) {
+            return IrisPipeline.encodeIris(decoded.image, circles);
+        }
+
+        IrisData sourceCircles = decoded.toSourceCoordinates(circles);
+        DecodedImage region = ImageDecoder.decode(new ByteArrayInputStream(imageBytes), Integer.MAX_VALUE,
+                ImageDecoder.DEFAULT_MAX_PIXELS, IrisNormalizer.sampledBounds(sourceCircles));
+        if (region == null) {
+            throw new IOException("Image could not be decoded a second time");
+        }
+        return IrisPipeline.encodeIris(region.image,
+                sourceCircles.transformed(1.0, -region.offsetX, -region.offsetY));
+    }
+
     // Request and Response classes
     
     public static class ImageRequest {
         private String imageData;
+        private Long deadlineMs;
+        private String searchMode;
+        private String engine;
+        private Boolean locateEyes;
+        private Integer maxEyes;
+        private SearchHintsRequest hints;
 
         public ImageRequest() {}
 
@@ -181,6 +707,98 @@ public class IrisWebController {
         public void setImageData(String imageData) {
             this.imageData = imageData;
         }
+
+        public Long getDeadlineMs() {
+            return deadlineMs;
+        }
+
+        public void setDeadlineMs(Long deadlineMs) {
+            this.deadlineMs = deadlineMs;
+        }
+
+        public String getSearchMode() {
+            return searchMode;
+        }
+
+        public void setSearchMode(String searchMode) {
+            this.searchMode = searchMode;
+        }
+
+        public String getEngine() {
+            return engine;
+        }
+
+        public void setEngine(String engine) {
+            this.engine = engine;
+        }
+
+        public Boolean getLocateEyes() {
+            return locateEyes;
+        }
+
+        public void setLocateEyes(Boolean locateEyes) {
+            this.locateEyes = locateEyes;
+        }
+
+        public Integer getMaxEyes() {
+            return maxEyes;
+        }
+
+        public void setMaxEyes(Integer maxEyes) {
+            this.maxEyes = maxEyes;
+        }
+
+        public SearchHintsRequest getHints() {
+            return hints;
+        }
+
+        public void setHints(SearchHintsRequest hints) {
+            this.hints = hints;
+        }
+    }
+
+    public static class EnrollRequest extends ImageRequest {
+        private String subjectId;
+
+        public EnrollRequest() {}
+
+        public String getSubjectId() { return subjectId; }
+        public void setSubjectId(String subjectId) { this.subjectId = subjectId; }
+    }
+
+    public static class IdentifyRequest extends ImageRequest {
+        private Double threshold;
+        private Integer maxResults;
+
+        public IdentifyRequest() {}
+
+        public Double getThreshold() { return threshold; }
+        public void setThreshold(Double threshold) { this.threshold = threshold; }
+        public Integer getMaxResults() { return maxResults; }
+        public void setMaxResults(Integer maxResults) { this.maxResults = maxResults; }
+    }
+
+    /**
+     * LOW_QUALITY error carrying the individual quality scores
+     */
+    public static class QualityErrorResponse extends ErrorResponse {
+        private double focusScore;
+        private double brightness;
+        private double clippedFraction;
+        private double glareFraction;
+
+        public QualityErrorResponse(ImageQuality.QualityResult quality) {
+            super("LOW_QUALITY", quality.reason);
+            this.focusScore = quality.focusScore;
+            this.brightness = quality.brightness;
+            this.clippedFraction = quality.clippedFraction;
+            this.glareFraction = quality.glareFraction;
+        }
+
+        public double getFocusScore() { return focusScore; }
+        public double getBrightness() { return brightness; }
+        public double getClippedFraction() { return clippedFraction; }
+        public double getGlareFraction() { return glareFraction; }
     }
 
     public static class ErrorResponse {
@@ -210,7 +828,35 @@ public class IrisWebController {
         private int irisCenterX;
         private int irisCenterY;
         private int irisRadius;
+        private double precisePupilCenterX;
+        private double precisePupilCenterY;
+        private double precisePupilRadius;
+        private double preciseIrisCenterX;
+        private double preciseIrisCenterY;
+        private double preciseIrisRadius;
         private double eyeConfidence;
+        private boolean searchCompleted;
+        private double searchCoverage;
+        private boolean circlesFound;
+
+        protected IrisResponseWithConfidence(IrisResponseWithConfidence other) {
+            this.pupilCenterX = other.pupilCenterX;
+            this.pupilCenterY = other.pupilCenterY;
+            this.pupilRadius = other.pupilRadius;
+            this.irisCenterX = other.irisCenterX;
+            this.irisCenterY = other.irisCenterY;
+            this.irisRadius = other.irisRadius;
+            this.precisePupilCenterX = other.precisePupilCenterX;
+            this.precisePupilCenterY = other.precisePupilCenterY;
+            this.precisePupilRadius = other.precisePupilRadius;
+            this.preciseIrisCenterX = other.preciseIrisCenterX;
+            this.preciseIrisCenterY = other.preciseIrisCenterY;
+            this.preciseIrisRadius = other.preciseIrisRadius;
+            this.eyeConfidence = other.eyeConfidence;
+            this.searchCompleted = other.searchCompleted;
+            this.searchCoverage = other.searchCoverage;
+            this.circlesFound = other.circlesFound;
+        }
 
         public IrisResponseWithConfidence(IrisData data, double confidence) {
             this.pupilCenterX = data.pupilCenterX;
@@ -219,7 +865,16 @@ public class IrisWebController {
             this.irisCenterX = data.irisCenterX;
             this.irisCenterY = data.irisCenterY;
             this.irisRadius = data.irisRadius;
+            this.precisePupilCenterX = data.precisePupilCenterX;
+            this.precisePupilCenterY = data.precisePupilCenterY;
+            this.precisePupilRadius = data.precisePupilRadius;
+            this.preciseIrisCenterX = data.preciseIrisCenterX;
+            this.preciseIrisCenterY = data.preciseIrisCenterY;
+            this.preciseIrisRadius = data.preciseIrisRadius;
             this.eyeConfidence = confidence;
+            this.searchCompleted = data.searchCompleted;
+            this.searchCoverage = data.searchCoverage;
+            this.circlesFound = data.circlesFound;
         }
 
         // Getters (Spring needs these for JSON serialization)
@@ -229,6 +884,111 @@ public class IrisWebController {
         public int getIrisCenterX() { return irisCenterX; }
         public int getIrisCenterY() { return irisCenterY; }
         public int getIrisRadius() { return irisRadius; }
+        public double getPrecisePupilCenterX() { return precisePupilCenterX; }
+        public double getPrecisePupilCenterY() { return precisePupilCenterY; }
+        public double getPrecisePupilRadius() { return precisePupilRadius; }
+        public double getPreciseIrisCenterX() { return preciseIrisCenterX; }
+        public double getPreciseIrisCenterY() { return preciseIrisCenterY; }
+        public double getPreciseIrisRadius() { return preciseIrisRadius; }
         public double getEyeConfidence() { return eyeConfidence; }
+        public boolean isSearchCompleted() { return searchCompleted; }
+        public double getSearchCoverage() { return searchCoverage; }
+        public boolean isCirclesFound() { return circlesFound; }
+    }
+
+    /**
+     * Response for located-eye requests: the strongest eye's fields at the top level
+     * (so single-eye clients keep working) plus every eye found
+     */
+    public static class MultiEyeResponse extends IrisResponseWithConfidence {
+        private List<IrisResponseWithConfidence> eyes;
+
+        public MultiEyeResponse(List<IrisResponseWithConfidence> eyes) {
+            super(eyes.get(0));
+            this.eyes = eyes;
+        }
+
+        public List<IrisResponseWithConfidence> getEyes() { return eyes; }
+        public int getEyeCount() { return eyes.size(); }
+    }
+
+    public static class EnrollResponse extends IrisResponseWithConfidence {
+        private String subjectId;
+        private int validBits;
+        private int gallerySize;
+
+        EnrollResponse(TemplateExtraction extraction, String subjectId, int gallerySize) {
+            super(extraction.irisData, extraction.confidence);
+            this.subjectId = subjectId;
+            this.validBits = extraction.code.validBits();
+            this.gallerySize = gallerySize;
+        }
+
+        public String getSubjectId() { return subjectId; }
+        public int getValidBits() { return validBits; }
+        public int getGallerySize() { return gallerySize; }
+    }
+
+    public static class MatchCandidate {
+        private String subjectId;
+        private double distance;
+        private double rotationDegrees;
+
+        MatchCandidate(IrisMatcher.Candidate candidate) {
+            this.subjectId = candidate.subjectId;
+            this.distance = candidate.distance;
+            this.rotationDegrees = 360.0 * candidate.shift / IrisCode.COLUMNS;
+        }
+
+        public String getSubjectId() { return subjectId; }
+        public double getDistance() { return distance; }
+        public double getRotationDegrees() { return rotationDegrees; }
+    }
+
+    /**
+     * Identification result: the probe's segmentation plus the closest enrolled
+     * subjects under the threshold, best first
+     */
+    public static class IdentifyResponse extends IrisResponseWithConfidence {
+        private boolean matched;
+        private String subjectId;
+        private List<MatchCandidate> candidates;
+        private long scanned;
+        private int gallerySize;
+        private double searchMillis;
+
+        IdentifyResponse(TemplateExtraction extraction, IrisMatcher.IdentifyResult result, int gallerySize,
+                         double searchMillis) {
+            super(extraction.irisData, extraction.confidence);
+            this.matched = result.best() != null;
+            this.subjectId = matched ? result.best().subjectId : null;
+            this.candidates = new ArrayList<>();
+            for (IrisMatcher.Candidate candidate : result.candidates) {
+                candidates.add(new MatchCandidate(candidate));
+            }
+            this.scanned = result.scanned;
+            this.gallerySize = gallerySize;
+            this.searchMillis = searchMillis;
+        }
+
+        public boolean isMatched() { return matched; }
+        public String getSubjectId() { return subjectId; }
+        public List<MatchCandidate> getCandidates() { return candidates; }
+        public long getScanned() { return scanned; }
+        public int getGallerySize() { return gallerySize; }
+        public double getSearchMillis() { return searchMillis; }
+    }
+
+    public static class CompactResponse {
+        private int reclaimedRecords;
+        private int gallerySize;
+
+        CompactResponse(int reclaimedRecords, int gallerySize) {
+            this.reclaimedRecords = reclaimedRecords;
+            this.gallerySize = gallerySize;
+        }
+
+        public int getReclaimedRecords() { return reclaimedRecords; }
+        public int getGallerySize() { return gallerySize; }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,564 @@
+package com.eyecos.prueba_electron;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.imageio.ImageIO;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Load generator for a locally started server ({@link IrisWebController} or
+ * {@link EmbeddedServer}): sends eye images to the process endpoints from many
+ * concurrent streams and writes a latency report.
+ *
+ * Usage:
+ *   java -cp prueba_electron-1.0.0-cli.jar com.eyecos.prueba_electron.LoadGenerator
+ *        [--url=http://localhost:8080] [--endpoints=base64,file] [--images=DIR|LIST]
+ *        [--synthetic=N] [--size=PX] [--mode=closed|open] [--concurrency=N]
+ *        [--rate=PER_SECOND] [--max-in-flight=N] [--duration=S] [--warmup=S]
+ *        [--timeout-ms=N] [--report=FILE]
+ *
+ * Closed mode runs --concurrency clients that each send the next request as soon
+ * as the previous answer arrives, so the server sets the pace. Open mode starts
+ * requests at a fixed --rate whether or not earlier ones have finished, the way
+ * independent users arrive. Its latencies are measured from each request's
+ * scheduled start, so time spent queued behind a stalled server is not hidden.
+ * At most --max-in-flight requests are outstanding; arrivals beyond that are
+ * counted as dropped.
+ *
+ * Images come from --images (a directory or file list, as for the CLI's bulk
+ * mode) or are --synthetic eyes rendered at --size. Requests rotate through the
+ * images and the chosen endpoints. Nothing sent during the first --warmup
+ * seconds is counted.
+ *
+ * The JSON report has throughput, p50/p95/p99/max latency, status and error code
+ * counts, and error and 429 rates, overall and per endpoint. It also has the
+ * server's heap and GC figures from /api/metrics. Keys are in a fixed order and
+ * the report has no timestamps, so two runs can be compared with diff.
+ */
+public class LoadGenerator {
+
+    private static final String BOUNDARY = "----IrisLoadGenerator";
+
+    /** Interval between heap samples taken from /api/metrics during the run. */
+    private static final long METRICS_INTERVAL_MS = 1000;
+
+    private static class Settings {
+        String url = "http://localhost:8080";
+        List<String> endpoints = Arrays.asList("base64", "file");
+        Path images;
+        int synthetic = 8;
+        int size = 480;
+        boolean open;
+        int concurrency = 4;
+        double rate = 2;
+        int maxInFlight = 256;
+        double duration = 30;
+        double warmup = 5;
+        long timeoutMillis = 30_000;
+        Path report = Paths.get("loadtest-report.json");
+    }
+
+    /** One prepared request: the endpoint and its ready-made body. */
+    private static class Payload {
+        final String endpoint;
+        final HttpRequest request;
+
+        Payload(String endpoint, HttpRequest request) {
+            this.endpoint = endpoint;
+            this.request = request;
+        }
+    }
+
+    /** Everything recorded for one endpoint (or for all of them). */
+    private static class Stats {
+        private double[] latencies = new double[1024];
+        private int count;
+        private final Map<String, Integer> statuses = new TreeMap<>();
+        private final Map<String, Integer> errorCodes = new TreeMap<>();
+
+        synchronized void record(String status, String errorCode, double millis) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = millis;
+            statuses.merge(status, 1, Integer::sum);
+            if (errorCode != null) {
+                errorCodes.merge(errorCode, 1, Integer::sum);
+            }
+        }
+
+        synchronized Map<String, Object> report(double seconds) {
+            double[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            double sum = 0;
+            for (double latency : sorted) {
+                sum += latency;
+            }
+            int ok = 0;
+            int tooMany = 0;
+            for (Map.Entry<String, Integer> entry : statuses.entrySet()) {
+                if (entry.getKey().startsWith("2")) {
+                    ok += entry.getValue();
+                } else if (entry.getKey().equals("429")) {
+                    tooMany += entry.getValue();
+                }
+            }
+
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("requests", count);
+            values.put("throughputPerSecond", round(seconds > 0 ? count / seconds : 0));
+            values.put("meanMillis", round(count > 0 ? sum / count : 0));
+            values.put("p50Millis", round(percentile(sorted, 0.50)));
+            values.put("p95Millis", round(percentile(sorted, 0.95)));
+            values.put("p99Millis", round(percentile(sorted, 0.99)));
+            values.put("maxMillis", round(count > 0 ? sorted[count - 1] : 0));
+            values.put("errorRate", ratio(count - ok, count));
+            values.put("rate429", ratio(tooMany, count));
+            values.put("statuses", new TreeMap<>(statuses));
+            values.put("errorCodes", new TreeMap<>(errorCodes));
+            return values;
+        }
+    }
+
+    private final Settings settings;
+    private final HttpClient client;
+    private final Gson gson = new Gson();
+    private final Stats total = new Stats();
+    private final Map<String, Stats> byEndpoint = new TreeMap<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private volatile long peakHeap = -1;
+
+    private LoadGenerator(Settings settings) {
+        this.settings = settings;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(settings.timeoutMillis))
+                .build();
+        for (String endpoint : settings.endpoints) {
+            byEndpoint.put(endpoint, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = new Settings();
+        for (String arg : args) {
+            if (arg.startsWith("--url=")) {
+                settings.url = arg.substring("--url=".length()).replaceAll("/+$", "");
+            } else if (arg.startsWith("--endpoints=")) {
+                settings.endpoints = Arrays.asList(arg.substring("--endpoints=".length()).split(","));
+                for (String endpoint : settings.endpoints) {
+                    if (!endpoint.equals("base64") && !endpoint.equals("file")) {
+                        throw new IllegalArgumentException("Unknown endpoint: " + endpoint
+                                + " (expected base64 or file)");
+                    }
+                }
+            } else if (arg.startsWith("--images=")) {
+                settings.images = Paths.get(arg.substring("--images=".length()));
+            } else if (arg.startsWith("--synthetic=")) {
+                settings.synthetic = Integer.parseInt(arg.substring("--synthetic=".length()));
+            } else if (arg.startsWith("--size=")) {
+                settings.size = Integer.parseInt(arg.substring("--size=".length()));
+            } else if (arg.startsWith("--mode=")) {
+                String mode = arg.substring("--mode=".length());
+                if (!mode.equals("open") && !mode.equals("closed")) {
+                    throw new IllegalArgumentException("Unknown mode: " + mode + " (expected open or closed)");
+                }
+                settings.open = mode.equals("open");
+            } else if (arg.startsWith("--concurrency=")) {
+                settings.concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            } else if (arg.startsWith("--rate=")) {
+                settings.rate = Double.parseDouble(arg.substring("--rate=".length()));
+            } else if (arg.startsWith("--max-in-flight=")) {
+                settings.maxInFlight = Integer.parseInt(arg.substring("--max-in-flight=".length()));
+            } else if (arg.startsWith("--duration=")) {
+                settings.duration = Double.parseDouble(arg.substring("--duration=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                settings.warmup = Double.parseDouble(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--timeout-ms=")) {
+                settings.timeoutMillis = Long.parseLong(arg.substring("--timeout-ms=".length()));
+            } else if (arg.startsWith("--report=")) {
+                settings.report = Paths.get(arg.substring("--report=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+        if (settings.concurrency < 1 || settings.maxInFlight < 1 || settings.rate <= 0
+                || settings.duration <= settings.warmup) {
+            throw new IllegalArgumentException("Need --concurrency and --max-in-flight of at least 1, a positive "
+                    + "--rate and a --duration longer than --warmup");
+        }
+
+        new LoadGenerator(settings).run();
+    }
+
+    private void run() throws Exception {
+        List<Payload> payloads = preparePayloads();
+        System.out.println("Load test against " + settings.url + ": " + payloads.size() + " payloads, "
+                + (settings.open ? "open loop at " + settings.rate + " requests/s"
+                                 : "closed loop with " + settings.concurrency + " clients")
+                + ", " + settings.duration + " s (" + settings.warmup + " s warm-up)");
+
+        JsonObject metricsBefore = fetchMetrics();
+        Thread sampler = new Thread(this::sampleHeap, "metrics-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+
+        long start = System.nanoTime();
+        long measureFrom = start + (long) (settings.warmup * 1e9);
+        long end = start + (long) (settings.duration * 1e9);
+        if (settings.open) {
+            runOpen(payloads, measureFrom, end);
+        } else {
+            runClosed(payloads, measureFrom, end);
+        }
+        sampler.interrupt();
+        JsonObject metricsAfter = fetchMetrics();
+
+        double seconds = settings.duration - settings.warmup;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", describeSettings(payloads.size()));
+        Map<String, Object> overall = total.report(seconds);
+        overall.put("sent", sent.get());
+        overall.put("dropped", dropped.get());
+        report.put("overall", overall);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        byEndpoint.forEach((name, stats) -> endpoints.put(name, stats.report(seconds)));
+        report.put("endpoints", endpoints);
+        report.put("server", serverReport(metricsBefore, metricsAfter));
+
+        Gson pretty = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        Files.write(settings.report, (pretty.toJson(report) + "\n").getBytes(StandardCharsets.UTF_8));
+
+        System.out.println(String.format(Locale.ROOT,
+                "%d requests, %.1f/s; latency p50 %.1f ms, p95 %.1f, p99 %.1f, max %.1f; error rate %.3f, "
+                        + "429 rate %.3f, dropped %d",
+                overall.get("requests"), overall.get("throughputPerSecond"), overall.get("p50Millis"),
+                overall.get("p95Millis"), overall.get("p99Millis"), overall.get("maxMillis"),
+                overall.get("errorRate"), overall.get("rate429"), dropped.get()));
+        System.out.println("Report written to " + settings.report);
+    }
+
+    /**
+     * Closed loop: each client sends its next request when the previous one is done.
+     */
+    private void runClosed(List<Payload> payloads, long measureFrom, long end) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        List<Thread> workers = new ArrayList<>();
+        for (int c = 0; c < settings.concurrency; c++) {
+            Thread worker = new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    Payload payload = payloads.get((int) (next.getAndIncrement() % payloads.size()));
+                    long started = System.nanoTime();
+                    sent.incrementAndGet();
+                    try {
+                        HttpResponse<String> response = client.send(payload.request,
+                                HttpResponse.BodyHandlers.ofString());
+                        record(payload, started, measureFrom, response, null);
+                    } catch (IOException e) {
+                        record(payload, started, measureFrom, null, e);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }, "load-client-" + c);
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+    }
+
+    /**
+     * Open loop: request i is due at start + i / rate regardless of earlier answers.
+     */
+    private void runOpen(List<Payload> payloads, long measureFrom, long end) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(settings.maxInFlight);
+        long start = System.nanoTime();
+        double interval = 1e9 / settings.rate;
+
+        for (long i = 0; ; i++) {
+            long due = start + (long) (i * interval);
+            if (due >= end) {
+                break;
+            }
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (!inFlight.tryAcquire()) {
+                if (due >= measureFrom) {
+                    dropped.incrementAndGet();
+                }
+                continue;
+            }
+
+            Payload payload = payloads.get((int) (i % payloads.size()));
+            sent.incrementAndGet();
+            client.sendAsync(payload.request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        record(payload, due, measureFrom, response, error);
+                        inFlight.release();
+                    });
+        }
+
+        // Let the last requests finish before reading the server's figures
+        if (!inFlight.tryAcquire(settings.maxInFlight, settings.timeoutMillis, TimeUnit.MILLISECONDS)) {
+            System.err.println("Some requests were still outstanding after " + settings.timeoutMillis + " ms");
+        }
+    }
+
+    private void record(Payload payload, long started, long measureFrom, HttpResponse<String> response,
+                        Throwable error) {
+        if (started < measureFrom) {
+            return;
+        }
+        double millis = (System.nanoTime() - started) / 1e6;
+        String status = response != null ? String.valueOf(response.statusCode())
+                : "transport:" + rootCause(error).getClass().getSimpleName();
+        String errorCode = response != null ? errorCode(response.body()) : null;
+        total.record(status, errorCode, millis);
+        byEndpoint.get(payload.endpoint).record(status, errorCode, millis);
+    }
+
+    /** The errorCode field of a JSON error body, or null for any other answer. */
+    private static String errorCode(String body) {
+        if (body == null || !body.startsWith("{") || !body.contains("\"errorCode\"")) {
+            return null;
+        }
+        try {
+            JsonElement code = JsonParser.parseString(body).getAsJsonObject().get("errorCode");
+            return code == null || code.isJsonNull() ? null : code.getAsString();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Throwable rootCause(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    private List<Payload> preparePayloads() throws IOException {
+        List<String> names = new ArrayList<>();
+        List<byte[]> images = new ArrayList<>();
+        if (settings.images != null) {
+            for (Path file : BulkProcessor.listInput(settings.images)) {
+                names.add(file.getFileName().toString());
+                images.add(Files.readAllBytes(file));
+            }
+        } else {
+            for (int i = 0; i < settings.synthetic; i++) {
+                ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+                ImageIO.write(SyntheticEye.render(settings.size, i).image, "jpeg", jpeg);
+                names.add("synthetic-" + i + ".jpg");
+                images.add(jpeg.toByteArray());
+            }
+        }
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No images to send");
+        }
+
+        List<Payload> payloads = new ArrayList<>();
+        for (int i = 0; i < images.size(); i++) {
+            for (String endpoint : settings.endpoints) {
+                payloads.add(endpoint.equals("base64")
+                        ? base64Payload(names.get(i), images.get(i))
+                        : filePayload(names.get(i), images.get(i)));
+            }
+        }
+        return payloads;
+    }
+
+    private Payload base64Payload(String name, byte[] image) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("imageData", "data:" + contentType(name) + ";base64," + Base64.getEncoder().encodeToString(image));
+        HttpRequest request = HttpRequest.newBuilder(URI.create(settings.url + "/api/process-base64"))
+                .timeout(Duration.ofMillis(settings.timeoutMillis))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(body)))
+                .build();
+        return new Payload("base64", request);
+    }
+
+    private Payload filePayload(String name, byte[] image) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"image\"; filename=\"" + name + "\"\r\n"
+                + "Content-Type: " + contentType(name) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(image);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(settings.url + "/api/process-file"))
+                .timeout(Duration.ofMillis(settings.timeoutMillis))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+        return new Payload("file", request);
+    }
+
+    private static String contentType(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        if (lower.endsWith(".png")) {
+            return "image/png";
+        }
+        if (lower.endsWith(".bmp")) {
+            return "image/bmp";
+        }
+        if (lower.endsWith(".gif")) {
+            return "image/gif";
+        }
+        return "image/jpeg";
+    }
+
+    /** GET /api/metrics, or null when the server does not answer it. */
+    private JsonObject fetchMetrics() {
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(settings.url + "/api/metrics"))
+                    .timeout(Duration.ofMillis(settings.timeoutMillis))
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            return JsonParser.parseString(response.body()).getAsJsonObject();
+        } catch (IOException | RuntimeException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private void sampleHeap() {
+        while (!Thread.currentThread().isInterrupted()) {
+            JsonObject jvm = jvm(fetchMetrics());
+            if (jvm != null && jvm.has("heapUsed")) {
+                peakHeap = Math.max(peakHeap, jvm.get("heapUsed").getAsLong());
+            }
+            try {
+                Thread.sleep(METRICS_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static JsonObject jvm(JsonObject metrics) {
+        return metrics != null && metrics.has("jvm") ? metrics.getAsJsonObject("jvm") : null;
+    }
+
+    /**
+     * Heap before, after and at its sampled peak, and collections and pause time
+     * per collector during the run.
+     */
+    private Map<String, Object> serverReport(JsonObject before, JsonObject after) {
+        JsonObject jvmBefore = jvm(before);
+        JsonObject jvmAfter = jvm(after);
+        Map<String, Object> server = new LinkedHashMap<>();
+        if (jvmBefore == null || jvmAfter == null) {
+            server.put("available", false);
+            return server;
+        }
+
+        server.put("available", true);
+        server.put("heapUsedBeforeMb", megabytes(jvmBefore.get("heapUsed").getAsLong()));
+        server.put("heapUsedAfterMb", megabytes(jvmAfter.get("heapUsed").getAsLong()));
+        server.put("heapUsedPeakMb", megabytes(Math.max(peakHeap, jvmAfter.get("heapUsed").getAsLong())));
+        server.put("heapCommittedMb", megabytes(jvmAfter.get("heapCommitted").getAsLong()));
+        server.put("heapMaxMb", megabytes(jvmAfter.get("heapMax").getAsLong()));
+
+        Map<String, Object> collectors = new TreeMap<>();
+        long collections = 0;
+        long pauseMillis = 0;
+        JsonObject gcBefore = jvmBefore.getAsJsonObject("gc");
+        for (Map.Entry<String, JsonElement> entry : jvmAfter.getAsJsonObject("gc").entrySet()) {
+            JsonObject gcAfter = entry.getValue().getAsJsonObject();
+            JsonObject previous = gcBefore.has(entry.getKey()) ? gcBefore.getAsJsonObject(entry.getKey()) : null;
+            long count = gcAfter.get("count").getAsLong() - (previous == null ? 0 : previous.get("count").getAsLong());
+            long time = gcAfter.get("timeMillis").getAsLong()
+                    - (previous == null ? 0 : previous.get("timeMillis").getAsLong());
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("collections", count);
+            values.put("timeMillis", time);
+            collectors.put(entry.getKey(), values);
+            collections += count;
+            pauseMillis += time;
+        }
+        server.put("gcCollections", collections);
+        server.put("gcTimeMillis", pauseMillis);
+        server.put("collectors", collectors);
+        return server;
+    }
+
+    private Map<String, Object> describeSettings(int payloadCount) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("url", settings.url);
+        values.put("endpoints", settings.endpoints);
+        values.put("images", settings.images != null ? settings.images.toString()
+                                                     : "synthetic " + settings.synthetic + " x " + settings.size + "px");
+        values.put("payloads", payloadCount);
+        values.put("mode", settings.open ? "open" : "closed");
+        if (settings.open) {
+            values.put("rate", settings.rate);
+            values.put("maxInFlight", settings.maxInFlight);
+        } else {
+            values.put("concurrency", settings.concurrency);
+        }
+        values.put("durationSeconds", settings.duration);
+        values.put("warmupSeconds", settings.warmup);
+        values.put("timeoutMillis", settings.timeoutMillis);
+        return values;
+    }
+
+    private static double percentile(double[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(fraction * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+
+    private static double ratio(int part, int whole) {
+        return whole == 0 ? 0 : Math.round(1000.0 * part / whole) / 1000.0;
+    }
+
+    private static double megabytes(long bytes) {
+        return round(bytes / (1024.0 * 1024.0));
+    }
+}
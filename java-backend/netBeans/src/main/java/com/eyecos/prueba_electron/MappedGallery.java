@@ -0,0 +1,597 @@
+package com.eyecos.prueba_electron;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import com.eyecos.prueba_electron.IrisMatcher.IdentifyResult;
+import com.eyecos.prueba_electron.IrisMatcher.MatchOptions;
+
+/**
+ * {@link TemplateGallery} stored in a single file of fixed-size records and
+ * searched through memory mappings, so templates never enter the Java heap and
+ * opening a gallery does not depend on its size.
+ *
+ * File layout (little-endian):
+ * <pre>
+ *   header  64 bytes   magic, version, record size, code words,
+ *                      checkpoint (records known to be intact), live record count
+ *   record  576 bytes  status, CRC-32 of the rest, id length, UTF-8 id (max 54 bytes),
+ *                      32 code words, 32 mask words
+ * </pre>
+ *
+ * The record area is append-only and doubles as the write-ahead log: enrollment
+ * appends a record and forces it to disk before returning. Records past the
+ * header checkpoint are CRC-checked when the file is opened, and the first torn
+ * one (a crash mid-append) is cut off along with everything after it. The
+ * checkpoint is advanced every {@link #CHECKPOINT_INTERVAL} appends and on close,
+ * so that check only covers recent writes. Removal and re-enrollment mark the old
+ * record as deleted in place; {@link #compact()} rewrites the file without them.
+ *
+ * The subject-id index is only needed to replace or remove subjects, so it is
+ * built on the first such call rather than at startup. Identification scans the
+ * mappings directly, in parallel, exactly like {@link InMemoryGallery}.
+ */
+public class MappedGallery implements TemplateGallery, Closeable {
+
+    public static final int MAX_ID_BYTES = 54;
+
+    private static final long MAGIC = 0x314c414753495249L; // "IRISGAL1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int RECORD_HEADER_BYTES = 64;
+    private static final int RECORD_BYTES = RECORD_HEADER_BYTES + 2 * IrisCode.WORDS * Long.BYTES;
+
+    private static final int LIVE = 1;
+    private static final int DELETED = 2;
+
+    // Header fields
+    private static final int CHECKPOINT_OFFSET = 24;
+    private static final int LIVE_COUNT_OFFSET = 32;
+
+    // Record fields
+    private static final int CRC_OFFSET = 4;
+    private static final int ID_LENGTH_OFFSET = 8;
+    private static final int ID_OFFSET = 10;
+
+    /** Records per mapping; keeps every mapping well under the 2 GB buffer limit. */
+    private static final int RECORDS_PER_MAPPING = 1 << 20;
+
+    private static final boolean WINDOWS = System.getProperty("os.name", "").startsWith("Windows");
+
+    static final int CHECKPOINT_INTERVAL = 4096;
+
+    private final Path file;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+    private FileChannel channel;
+    private final List<MappedByteBuffer> mappings = new ArrayList<>();
+    private int records;
+    private int liveCount;
+    private int checkpoint;
+
+    /** Subject id to record, built on first use. */
+    private Map<String, Integer> index;
+
+    private MappedGallery(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Opens the gallery at {@code file}, creating it if it does not exist and
+     * discarding a torn final record or an interrupted compaction.
+     */
+    public static MappedGallery open(Path file) throws IOException {
+        Files.deleteIfExists(compactionFile(file));
+        MappedGallery gallery = new MappedGallery(file);
+        gallery.load();
+        return gallery;
+    }
+
+    private static Path compactionFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".compact");
+    }
+
+    private void load() throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        if (channel.size() < HEADER_BYTES) {
+            records = 0;
+            liveCount = 0;
+            writeHeader(channel, 0, 0);
+            channel.force(true);
+        } else {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(header, 0);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException("Not an iris gallery file: " + file);
+            }
+            if (header.getInt(8) != VERSION || header.getInt(12) != RECORD_BYTES
+                    || header.getInt(16) != IrisCode.WORDS) {
+                throw new IOException("Incompatible iris gallery format in " + file);
+            }
+
+            long complete = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            if (complete > Integer.MAX_VALUE) {
+                throw new IOException("Gallery file is too large: " + file);
+            }
+            records = (int) Math.min(header.getLong(CHECKPOINT_OFFSET), complete);
+            liveCount = (int) Math.min(header.getLong(LIVE_COUNT_OFFSET), records);
+
+            // Replay the appends made since the last checkpoint, stopping at the first torn record
+            while (records < complete && readRecord(records) && crcMatches(record)) {
+                if (record.getInt(0) == LIVE) {
+                    liveCount++;
+                }
+                records++;
+            }
+
+            long expectedSize = HEADER_BYTES + (long) records * RECORD_BYTES;
+            if (channel.size() != expectedSize) {
+                System.err.println("Gallery " + file + ": discarding " + (channel.size() - expectedSize)
+                        + " bytes of incomplete records");
+                channel.truncate(expectedSize);
+            }
+            writeHeader(channel, records, liveCount);
+            channel.force(true);
+        }
+
+        checkpoint = records;
+        mappings.clear();
+        remap();
+    }
+
+    @Override
+    public void enroll(String subjectId, IrisCode code) {
+        Map<String, IrisCode> single = new HashMap<>();
+        single.put(subjectId, code);
+        enrollAll(single);
+    }
+
+    /**
+     * Appends all templates and forces them to disk once, which is much faster than
+     * enrolling one at a time for bulk imports.
+     */
+    @Override
+    public void enrollAll(Map<String, IrisCode> templates) {
+        List<byte[]> ids = new ArrayList<>(templates.size());
+        for (String subjectId : templates.keySet()) {
+            ids.add(encodeId(subjectId));
+        }
+
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            ensureIndex();
+            int first = records;
+            try {
+                int i = 0;
+                for (IrisCode code : templates.values()) {
+                    writeRecord(first + i, ids.get(i), code);
+                    i++;
+                }
+                channel.force(false);
+                records = first + ids.size();
+                remap();
+            } catch (IOException | RuntimeException e) {
+                discardAppends(first, e);
+                throw e;
+            }
+
+            // Publish the batch only now that it is on disk and mapped
+            List<Integer> replaced = new ArrayList<>();
+            int next = first;
+            for (String subjectId : templates.keySet()) {
+                Integer previous = index.put(subjectId, next++);
+                if (previous != null) {
+                    replaced.add(previous);
+                } else {
+                    liveCount++;
+                }
+            }
+
+            // Only once the new records are durable may the old ones go
+            if (!replaced.isEmpty()) {
+                for (int slot : replaced) {
+                    markDeleted(slot);
+                }
+                channel.force(false);
+            }
+
+            if (records - checkpoint >= CHECKPOINT_INTERVAL || !replaced.isEmpty()) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            // A replaced record may still be live on disk; rebuilding the index repairs it
+            index = null;
+            throw new UncheckedIOException("Could not write to gallery " + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(String subjectId) {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            ensureIndex();
+            Integer slot = index.get(subjectId);
+            if (slot == null) {
+                return false;
+            }
+            markDeleted(slot);
+            channel.force(false);
+            index.remove(subjectId);
+            liveCount--;
+            checkpoint();
+            return true;
+        } catch (IOException e) {
+            index = null;
+            throw new UncheckedIOException("Could not write to gallery " + file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return liveCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of records in the file, including deleted ones that {@link #compact()} would drop. */
+    public int recordCount() {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public IdentifyResult identify(IrisCode probe, MatchOptions options) {
+        IrisMatcher.Probe prepared = new IrisMatcher.Probe(probe, options.maxShift);
+
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            List<MappedByteBuffer> views = new ArrayList<>(mappings);
+            return IrisMatcher.scan(records, options, chunk -> {
+                // Per task: private buffer views and scratch words for the record being scored
+                List<LongBuffer> words = new ArrayList<>(views.size());
+                for (MappedByteBuffer mapping : views) {
+                    words.add(mapping.duplicate().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer());
+                }
+                long[] bits = new long[IrisCode.WORDS];
+                long[] mask = new long[IrisCode.WORDS];
+
+                return (entry, limit, shiftOut) -> {
+                    int local = entry % RECORDS_PER_MAPPING;
+                    ByteBuffer mapping = views.get(entry / RECORDS_PER_MAPPING);
+                    if (mapping.getInt(local * RECORD_BYTES) != LIVE) {
+                        return IrisMatcher.NO_MATCH;
+                    }
+                    LongBuffer view = words.get(entry / RECORDS_PER_MAPPING);
+                    view.position((local * RECORD_BYTES + RECORD_HEADER_BYTES) / Long.BYTES);
+                    view.get(bits);
+                    view.get(mask);
+                    return IrisMatcher.bestDistance(prepared, bits, mask, 0, limit, shiftOut);
+                };
+            }, entry -> readId(views.get(entry / RECORDS_PER_MAPPING),
+                    (entry % RECORDS_PER_MAPPING) * RECORD_BYTES));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rewrites the file without deleted records and swaps it in atomically. A crash
+     * part-way leaves the original file untouched, and a failed swap leaves the
+     * gallery open on the original. If the swapped-in file cannot be opened, the
+     * gallery is left closed and every later call throws. The directory is forced after the rename so
+     * the swap itself survives a crash. Returns the number of records reclaimed.
+     */
+    public int compact() throws IOException {
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            ensureIndex();
+            int before = records;
+            Path target = compactionFile(file);
+
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                int kept = 0;
+                for (int slot = 0; slot < records; slot++) {
+                    readRecord(slot);
+                    if (record.getInt(0) == LIVE) {
+                        record.clear();
+                        long position = HEADER_BYTES + (long) kept * RECORD_BYTES;
+                        while (record.hasRemaining()) {
+                            position += out.write(record, position);
+                        }
+                        kept++;
+                    }
+                }
+                writeHeader(out, kept, kept);
+                out.force(true);
+            }
+
+            // The original stays open and mapped until the new file is in place, so a
+            // failed swap leaves the gallery working on it
+            FileChannel previous = channel;
+            try {
+                Files.move(target, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                if (!WINDOWS) {
+                    Files.deleteIfExists(target);
+                    throw e;
+                }
+                // Windows will not replace a file that is open or mapped: release it and retry once
+                channel.close();
+                mappings.clear();
+                try {
+                    Files.move(target, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (IOException retry) {
+                    e.addSuppressed(retry);
+                    Files.deleteIfExists(target);
+                    try {
+                        reload();
+                    } catch (IOException reopen) {
+                        e.addSuppressed(reopen);
+                    }
+                    throw e;
+                }
+            }
+
+            // The original is unlinked now: never fall back to it, even if the new file fails to open
+            try {
+                previous.close();
+            } finally {
+                reload();
+            }
+            forceDirectory(file.toAbsolutePath().getParent());
+            return before - records;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel.isOpen()) {
+                checkpoint();
+                channel.close();
+            }
+            mappings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureOpen() {
+        if (!channel.isOpen()) {
+            throw new IllegalStateException("Gallery " + file + " is closed");
+        }
+    }
+
+    /** Reopens the file, leaving the gallery closed and empty if that fails. */
+    private void reload() throws IOException {
+        index = null;
+        mappings.clear();
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            if (channel.isOpen()) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            mappings.clear();
+            records = 0;
+            liveCount = 0;
+            throw e;
+        }
+    }
+
+    /**
+     * Undoes a failed append. Nothing past {@code first} was published, so it is
+     * cut off rather than left for the next open to replay.
+     */
+    private void discardAppends(int first, Exception cause) {
+        records = first;
+        try {
+            channel.truncate(HEADER_BYTES + (long) first * RECORD_BYTES);
+            remap();
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Makes a rename inside {@code directory} durable. Windows cannot open a
+     * directory as a channel and journals renames itself, so it is skipped there.
+     */
+    private static void forceDirectory(Path directory) throws IOException {
+        if (directory == null || WINDOWS) {
+            return;
+        }
+        try (FileChannel handle = FileChannel.open(directory, StandardOpenOption.READ)) {
+            handle.force(true);
+        }
+    }
+
+    /**
+     * Builds the subject index. Two live records for one id can only be left by a
+     * crash during re-enrollment; the later record wins and the earlier is deleted.
+     */
+    private void ensureIndex() throws IOException {
+        if (index != null) {
+            return;
+        }
+
+        Map<String, Integer> built = new HashMap<>();
+        boolean repaired = false;
+        for (int slot = 0; slot < records; slot++) {
+            ByteBuffer mapping = mappings.get(slot / RECORDS_PER_MAPPING);
+            int offset = (slot % RECORDS_PER_MAPPING) * RECORD_BYTES;
+            if (mapping.getInt(offset) != LIVE) {
+                continue;
+            }
+            Integer previous = built.put(readId(mapping, offset), slot);
+            if (previous != null) {
+                markDeleted(previous);
+                repaired = true;
+            }
+        }
+
+        index = built;
+        if (repaired || liveCount != built.size()) {
+            liveCount = built.size();
+            channel.force(false);
+            checkpoint();
+        }
+    }
+
+    private void checkpoint() throws IOException {
+        writeHeader(channel, records, liveCount);
+        channel.force(false);
+        checkpoint = records;
+    }
+
+    /** Maps every record; full mappings are kept and the last, partial one is replaced. */
+    private void remap() throws IOException {
+        int full = records / RECORDS_PER_MAPPING;
+        while (mappings.size() > full) {
+            mappings.remove(mappings.size() - 1);
+        }
+        for (int first = mappings.size() * RECORDS_PER_MAPPING; first < records; first += RECORDS_PER_MAPPING) {
+            int count = Math.min(RECORDS_PER_MAPPING, records - first);
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + (long) first * RECORD_BYTES, (long) count * RECORD_BYTES);
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            mappings.add(mapping);
+        }
+    }
+
+    private static void writeHeader(FileChannel target, long recordCount, long live) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0, MAGIC);
+        header.putInt(8, VERSION);
+        header.putInt(12, RECORD_BYTES);
+        header.putInt(16, IrisCode.WORDS);
+        header.putLong(CHECKPOINT_OFFSET, recordCount);
+        header.putLong(LIVE_COUNT_OFFSET, live);
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += target.write(header, position);
+        }
+    }
+
+    private void writeRecord(int slot, byte[] id, IrisCode code) throws IOException {
+        record.clear();
+        record.putInt(0, LIVE);
+        record.putShort(ID_LENGTH_OFFSET, (short) id.length);
+        for (int i = 0; i < MAX_ID_BYTES; i++) {
+            record.put(ID_OFFSET + i, i < id.length ? id[i] : 0);
+        }
+        for (int w = 0; w < IrisCode.WORDS; w++) {
+            record.putLong(RECORD_HEADER_BYTES + w * Long.BYTES, code.bits[w]);
+            record.putLong(RECORD_HEADER_BYTES + (IrisCode.WORDS + w) * Long.BYTES, code.mask[w]);
+        }
+        record.putInt(CRC_OFFSET, crc(record));
+
+        long position = HEADER_BYTES + (long) slot * RECORD_BYTES;
+        while (record.hasRemaining()) {
+            position += channel.write(record, position);
+        }
+    }
+
+    private void markDeleted(int slot) throws IOException {
+        ByteBuffer status = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        status.putInt(0, DELETED);
+        long position = HEADER_BYTES + (long) slot * RECORD_BYTES;
+        while (status.hasRemaining()) {
+            position += channel.write(status, position);
+        }
+    }
+
+    /** Reads record {@code slot} into {@link #record}; returns false if the file ends first. */
+    private boolean readRecord(int slot) throws IOException {
+        record.clear();
+        return readFully(record, HEADER_BYTES + (long) slot * RECORD_BYTES);
+    }
+
+    private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    /** CRC-32 of everything after the status and CRC fields, so deletion needs no rewrite. */
+    private static int crc(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        ByteBuffer covered = buffer.duplicate();
+        covered.position(ID_LENGTH_OFFSET).limit(RECORD_BYTES);
+        crc.update(covered);
+        return (int) crc.getValue();
+    }
+
+    private static boolean crcMatches(ByteBuffer buffer) {
+        return buffer.getInt(CRC_OFFSET) == crc(buffer);
+    }
+
+    private static byte[] encodeId(String subjectId) {
+        byte[] id = subjectId.getBytes(StandardCharsets.UTF_8);
+        if (id.length == 0 || id.length > MAX_ID_BYTES) {
+            throw new IllegalArgumentException("Subject id must be 1 to " + MAX_ID_BYTES + " UTF-8 bytes: "
+                    + subjectId);
+        }
+        return id;
+    }
+
+    private static String readId(ByteBuffer mapping, int offset) {
+        int length = mapping.getShort(offset + ID_LENGTH_OFFSET);
+        byte[] id = new byte[length];
+        for (int i = 0; i < length; i++) {
+            id[i] = mapping.get(offset + ID_OFFSET + i);
+        }
+        return new String(id, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.eyecos.prueba_electron;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide registry of counters and value summaries.
+ *
+ * Recording is cheap and thread-safe so it can sit on the request path; the web
+ * server exposes {@link #snapshot()} for dashboards and load tests, together with
+ * the JVM's heap and garbage collection figures.
+ */
+public class Metrics {
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, Summary> summaries = new ConcurrentHashMap<>();
+
+    /**
+     * Count, total, extremes and latest value of one recorded quantity.
+     */
+    public static class Summary {
+        public long count;
+        public double sum;
+        public double min = Double.POSITIVE_INFINITY;
+        public double max = Double.NEGATIVE_INFINITY;
+        public double last;
+
+        synchronized void add(double value) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            last = value;
+        }
+
+        synchronized Summary copy() {
+            Summary copy = new Summary();
+            copy.count = count;
+            copy.sum = sum;
+            copy.min = min;
+            copy.max = max;
+            copy.last = last;
+            return copy;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+    }
+
+    private Metrics() {}
+
+    public static void increment(String name) {
+        counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+    }
+
+    public static void record(String name, double value) {
+        summaries.computeIfAbsent(name, key -> new Summary()).add(value);
+    }
+
+    public static long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Copy of every counter and summary, sorted by name, plus a "jvm" section.
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+
+        Map<String, Object> summaryValues = new TreeMap<>();
+        summaries.forEach((name, summary) -> {
+            Summary copy = summary.copy();
+            Map<String, Object> values = new TreeMap<>();
+            values.put("count", copy.count);
+            values.put("mean", copy.getMean());
+            values.put("min", copy.count == 0 ? 0 : copy.min);
+            values.put("max", copy.count == 0 ? 0 : copy.max);
+            values.put("last", copy.last);
+            summaryValues.put(name, values);
+        });
+
+        Map<String, Object> snapshot = new TreeMap<>();
+        snapshot.put("counters", counterValues);
+        snapshot.put("summaries", summaryValues);
+        snapshot.put("jvm", jvm());
+        return snapshot;
+    }
+
+    /**
+     * Heap in bytes and, per collector, collections and total pause time since the
+     * JVM started.
+     */
+    private static Map<String, Object> jvm() {
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> values = new TreeMap<>();
+        values.put("heapUsed", heap.getUsed());
+        values.put("heapCommitted", heap.getCommitted());
+        values.put("heapMax", heap.getMax());
+
+        Map<String, Object> collectors = new TreeMap<>();
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            Map<String, Object> gc = new TreeMap<>();
+            gc.put("count", collector.getCollectionCount());
+            gc.put("timeMillis", collector.getCollectionTime());
+            collectors.put(collector.getName(), gc);
+        }
+        values.put("gc", collectors);
+        return values;
+    }
+}
@@ -0,0 +1,156 @@
+package com.eyecos.prueba_electron;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Minimal multipart/form-data parser for {@link EmbeddedServer}, which has no
+ * servlet container to do it. The whole body is held in memory (the server caps
+ * its size) and file parts are views into it rather than copies.
+ */
+class MultipartForm {
+
+    static class FilePart {
+        final String filename;
+        final String contentType;
+        private final byte[] body;
+        private final int offset;
+        final int length;
+
+        FilePart(String filename, String contentType, byte[] body, int offset, int length) {
+            this.filename = filename;
+            this.contentType = contentType;
+            this.body = body;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        InputStream openStream() {
+            return new ByteArrayInputStream(body, offset, length);
+        }
+    }
+
+    final Map<String, String> fields = new HashMap<>();
+    final Map<String, FilePart> files = new HashMap<>();
+
+    private MultipartForm() {}
+
+    /**
+     * Parses a multipart body. Throws IllegalArgumentException when the content type
+     * has no boundary or the body is not well-formed.
+     */
+    static MultipartForm parse(byte[] body, String contentType) {
+        String boundary = parameter(contentType, "boundary");
+        if (boundary == null || boundary.isEmpty()) {
+            throw new IllegalArgumentException("Multipart request without a boundary");
+        }
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] separator = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        byte[] headerEnd = { '\r', '\n', '\r', '\n' };
+
+        MultipartForm form = new MultipartForm();
+        int position = indexOf(body, delimiter, 0);
+        if (position < 0) {
+            throw new IllegalArgumentException("Multipart body does not contain its boundary");
+        }
+        position += delimiter.length;
+
+        while (position + 1 < body.length && !(body[position] == '-' && body[position + 1] == '-')) {
+            int headersStart = position + 2;
+            int headersEnd = indexOf(body, headerEnd, headersStart);
+            if (headersEnd < 0) {
+                throw new IllegalArgumentException("Multipart part without a header terminator");
+            }
+            int contentStart = headersEnd + headerEnd.length;
+            int contentEnd = indexOf(body, separator, contentStart);
+            if (contentEnd < 0) {
+                throw new IllegalArgumentException("Multipart part is not terminated");
+            }
+
+            String name = null;
+            String filename = null;
+            String partType = null;
+            String headers = new String(body, headersStart, headersEnd - headersStart, StandardCharsets.UTF_8);
+            for (String header : headers.split("\r\n")) {
+                int colon = header.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String headerName = header.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = header.substring(colon + 1).trim();
+                if (headerName.equals("content-disposition")) {
+                    name = parameter(value, "name");
+                    filename = parameter(value, "filename");
+                } else if (headerName.equals("content-type")) {
+                    partType = value;
+                }
+            }
+
+            if (name != null) {
+                if (filename != null) {
+                    form.files.put(name, new FilePart(filename, partType, body, contentStart, contentEnd - contentStart));
+                } else {
+                    form.fields.put(name, new String(body, contentStart, contentEnd - contentStart,
+                            StandardCharsets.UTF_8));
+                }
+            }
+            position = contentEnd + separator.length;
+        }
+        return form;
+    }
+
+    /**
+     * Adds the fields of a URL query string, without overriding form fields of the
+     * same name.
+     */
+    void addQuery(String rawQuery) {
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? pair : pair.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8);
+            fields.putIfAbsent(name, value);
+        }
+    }
+
+    /** A {@code key=value} or {@code key="value"} parameter of a header value, or null. */
+    private static String parameter(String header, String key) {
+        for (String part : header.split(";")) {
+            String trimmed = part.trim();
+            int equals = trimmed.indexOf('=');
+            if (equals > 0 && trimmed.substring(0, equals).trim().equalsIgnoreCase(key)) {
+                String value = trimmed.substring(equals + 1).trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(byte[] data, byte[] pattern, int from) {
+        byte first = pattern[0];
+        int last = data.length - pattern.length;
+        for (int i = Math.max(0, from); i <= last; i++) {
+            if (data[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
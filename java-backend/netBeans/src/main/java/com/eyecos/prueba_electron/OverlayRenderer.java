@@ -0,0 +1,198 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DirectColorModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.Locale;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+
+/**
+ * Draws the segmented circles onto an image and encodes the result.
+ *
+ * Circles are written straight into the image raster, one pixel at a time along
+ * each circle, with the color converted to the raster's pixel format once per
+ * circle. Nothing else in the image is read or copied, unless the image has to be
+ * downscaled or cannot hold color (grayscale, indexed, or alpha headed for JPEG),
+ * in which case one RGB copy is made first.
+ *
+ * Encoding streams into the caller's output stream through an in-memory
+ * ImageIO stream (no temporary files) with one {@link ImageWriter} per format and
+ * thread, kept for reuse because looking writers up goes through the service
+ * registry on every call.
+ */
+public class OverlayRenderer {
+
+    public static final int PUPIL_COLOR = Color.GREEN.getRGB();
+    public static final int IRIS_COLOR = Color.RED.getRGB();
+
+    public static final float DEFAULT_JPEG_QUALITY = 0.85f;
+
+    public enum Format {
+        JPEG("jpeg", "image/jpeg"),
+        PNG("png", "image/png");
+
+        public final String formatName;
+        public final String mimeType;
+
+        Format(String formatName, String mimeType) {
+            this.formatName = formatName;
+            this.mimeType = mimeType;
+        }
+
+        public static Format parse(String value) {
+            String name = value.trim().toLowerCase(Locale.ROOT);
+            if (name.equals("jpg") || name.equals("jpeg")) {
+                return JPEG;
+            }
+            if (name.equals("png")) {
+                return PNG;
+            }
+            throw new IllegalArgumentException("Unknown overlay format: " + value + " (expected jpeg or png)");
+        }
+    }
+
+    private static final ThreadLocal<ImageWriter> JPEG_WRITERS = ThreadLocal.withInitial(() -> writerFor(Format.JPEG));
+    private static final ThreadLocal<ImageWriter> PNG_WRITERS = ThreadLocal.withInitial(() -> writerFor(Format.PNG));
+
+    private OverlayRenderer() {}
+
+    /**
+     * Returns an image ready for {@link #drawInPlace}: {@code image} itself when it
+     * already fits in {@code maxSize} (0 for no limit) and can hold the overlay
+     * colors in {@code format}, otherwise an RGB copy scaled to fit. The scale
+     * applied is {@code result.getWidth() / image.getWidth()}.
+     */
+    public static BufferedImage prepare(BufferedImage image, int maxSize, Format format) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = maxSize > 0 ? Math.min(1.0, (double) maxSize / Math.max(width, height)) : 1.0;
+
+        ColorModel model = image.getColorModel();
+        boolean color = model instanceof DirectColorModel
+                || image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                || image.getType() == BufferedImage.TYPE_4BYTE_ABGR;
+        boolean alphaAllowed = format == Format.PNG || !model.hasAlpha();
+        if (scale == 1.0 && color && alphaAllowed) {
+            return image;
+        }
+
+        int targetWidth = Math.max(1, (int) Math.round(width * scale));
+        int targetHeight = Math.max(1, (int) Math.round(height * scale));
+        int type = format == Format.PNG && model.hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage copy = new BufferedImage(targetWidth, targetHeight, type);
+        Graphics2D g = copy.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        g.dispose();
+        return copy;
+    }
+
+    /**
+     * Draws the pupil (green) and iris (red) circles, three pixels wide, into
+     * {@code image}. {@code data} must be in the image's own coordinates.
+     */
+    public static void drawInPlace(BufferedImage image, IrisData data) {
+        drawCircle(image, data.pupilCenterX, data.pupilCenterY, data.pupilRadius, PUPIL_COLOR);
+        drawCircle(image, data.irisCenterX, data.irisCenterY, data.irisRadius, IRIS_COLOR);
+    }
+
+    /**
+     * Encodes {@code image} to {@code output}. The stream is flushed but not closed.
+     */
+    public static void write(BufferedImage image, Format format, float jpegQuality, OutputStream output)
+            throws IOException {
+        ImageWriter writer = (format == Format.JPEG ? JPEG_WRITERS : PNG_WRITERS).get();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (format == Format.JPEG) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+        }
+
+        ImageOutputStream stream = new MemoryCacheImageOutputStream(output);
+        try {
+            writer.setOutput(stream);
+            writer.write(null, new IIOImage(image, null, null), param);
+            stream.flush();
+        } finally {
+            writer.reset();
+            stream.close();
+        }
+    }
+
+    /**
+     * Prepares, draws and encodes in one step; {@code data} is in the coordinates of
+     * {@code image}.
+     */
+    public static void render(BufferedImage image, IrisData data, int maxSize, Format format,
+                              OutputStream output) throws IOException {
+        BufferedImage canvas = prepare(image, maxSize, format);
+        double scale = (double) canvas.getWidth() / image.getWidth();
+        drawInPlace(canvas, scale == 1.0 ? data : data.transformed(scale, 0, 0));
+        write(canvas, format, DEFAULT_JPEG_QUALITY, output);
+    }
+
+    private static ImageWriter writerFor(Format format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format.formatName);
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No ImageIO writer for " + format.formatName);
+        }
+        return writers.next();
+    }
+
+    private static void drawCircle(BufferedImage image, int centerX, int centerY, int radius, int rgb) {
+        WritableRaster raster = image.getRaster();
+        Object pixel = image.getColorModel().getDataElements(rgb, null);
+        drawSingleCircle(raster, pixel, centerX, centerY, radius - 1);
+        drawSingleCircle(raster, pixel, centerX, centerY, radius);
+        drawSingleCircle(raster, pixel, centerX, centerY, radius + 1);
+    }
+
+    /** Midpoint circle: visits each pixel of one octant and mirrors it into the other seven. */
+    private static void drawSingleCircle(WritableRaster raster, Object pixel, int centerX, int centerY, int radius) {
+        if (radius < 0) {
+            return;
+        }
+        int x = 0;
+        int y = radius;
+        int d = 3 - 2 * radius;
+
+        while (y >= x) {
+            setPixelSafe(raster, pixel, centerX + x, centerY + y);
+            setPixelSafe(raster, pixel, centerX + y, centerY + x);
+            setPixelSafe(raster, pixel, centerX - y, centerY + x);
+            setPixelSafe(raster, pixel, centerX - x, centerY + y);
+            setPixelSafe(raster, pixel, centerX - x, centerY - y);
+            setPixelSafe(raster, pixel, centerX - y, centerY - x);
+            setPixelSafe(raster, pixel, centerX + y, centerY - x);
+            setPixelSafe(raster, pixel, centerX + x, centerY - y);
+
+            if (d < 0) {
+                d = d + 4 * x + 6;
+            } else {
+                d = d + 4 * (x - y) + 10;
+                y--;
+            }
+            x++;
+        }
+    }
+
+    private static void setPixelSafe(WritableRaster raster, Object pixel, int x, int y) {
+        if (x >= 0 && x < raster.getWidth() && y >= 0 && y < raster.getHeight()) {
+            raster.setDataElements(x, y, pixel);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.eyecos.prueba_electron;
+
+import com.eyecos.prueba_electron.IrisSegmentation.SearchRegion;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds likely pupil centers before the Daugman search runs.
+ *
+ * The pupil is the darkest compact blob in the image, so every center of the search
+ * window is scored by the mean brightness of boxes inscribed in pupils of a few
+ * candidate radii. Averaging the scales keeps the score lowest at the middle of
+ * the blob instead of anywhere the smallest box happens to fit. With a summed-area
+ * table each box costs four lookups, so scoring the whole window is cheaper than
+ * scoring a handful of circles.
+ */
+final class PupilSeeder {
+
+    /** Scales tried between the smallest and largest pupil radius. */
+    private static final int SCALES = 3;
+
+    /** How much darker (gray levels) than the search window a seed must be. */
+    private static final double MIN_CONTRAST = 20;
+
+    static final class Seed {
+        final int centerX;
+        final int centerY;
+        /** Mean gray level of the seed's boxes, averaged over the scales. */
+        final double darkness;
+
+        Seed(int centerX, int centerY, double darkness) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.darkness = darkness;
+        }
+    }
+
+    private PupilSeeder() {}
+
+    /**
+     * Returns up to {@code maxSeeds} seeds, darkest first. Seeds closer than the
+     * smallest pupil radius to a darker one are dropped, and an image with no blob
+     * clearly darker than the window around it yields no seeds at all.
+     */
+    static List<Seed> findSeeds(byte[] pixels, int width, SearchRegion region, int maxSeeds) {
+        IntegralImage integral = new IntegralImage(pixels, width, width);
+
+        int spanX = region.maxX - region.minX + 1;
+        int spanY = region.maxY - region.minY + 1;
+        int[] sides = boxSides(region.pupilMinRadius, region.pupilMaxRadius);
+
+        double threshold = integral.mean(region.minX, region.minY, spanX, spanY) - MIN_CONTRAST;
+        double[] darkness = new double[spanX * spanY];
+        List<Integer> candidates = new ArrayList<>();
+
+        for (int cy = region.minY; cy <= region.maxY; cy++) {
+            for (int cx = region.minX; cx <= region.maxX; cx++) {
+                double total = 0;
+                int scales = 0;
+                for (int side : sides) {
+                    int x = cx - side / 2;
+                    int y = cy - side / 2;
+                    if (x >= 0 && y >= 0 && x + side <= width && y + side <= width) {
+                        total += integral.mean(x, y, side, side);
+                        scales++;
+                    }
+                }
+                if (scales == 0) {
+                    continue;
+                }
+
+                int index = (cy - region.minY) * spanX + (cx - region.minX);
+                darkness[index] = total / scales;
+                if (darkness[index] <= threshold) {
+                    candidates.add(index);
+                }
+            }
+        }
+
+        // Darkest first; the sort is stable, so ties keep scan order
+        candidates.sort((a, b) -> Double.compare(darkness[a], darkness[b]));
+
+        List<Seed> seeds = new ArrayList<>();
+        long minDistanceSq = (long) region.pupilMinRadius * region.pupilMinRadius;
+        for (int index : candidates) {
+            if (seeds.size() >= maxSeeds) {
+                break;
+            }
+            int cx = region.minX + index % spanX;
+            int cy = region.minY + index / spanX;
+
+            boolean suppressed = false;
+            for (Seed seed : seeds) {
+                long dx = cx - seed.centerX;
+                long dy = cy - seed.centerY;
+                if (dx * dx + dy * dy < minDistanceSq) {
+                    suppressed = true;
+                    break;
+                }
+            }
+            if (!suppressed) {
+                seeds.add(new Seed(cx, cy, darkness[index]));
+            }
+        }
+        return seeds;
+    }
+
+    /** Sides of the boxes inscribed in pupils of evenly spaced radii. */
+    private static int[] boxSides(int minRadius, int maxRadius) {
+        int count = maxRadius > minRadius ? SCALES : 1;
+        int[] sides = new int[count];
+        for (int i = 0; i < count; i++) {
+            int radius = count == 1 ? minRadius : minRadius + (maxRadius - minRadius) * i / (count - 1);
+            sides[i] = Math.max(2, (int) Math.round(radius * Math.sqrt(2)));
+        }
+        return sides;
+    }
+}
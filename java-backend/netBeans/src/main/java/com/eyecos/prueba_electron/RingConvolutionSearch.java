@@ -0,0 +1,339 @@
+package com.eyecos.prueba_electron;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores every center of the search window for one radius at a time by correlating
+ * the gradient image with a ring kernel in the frequency domain.
+ *
+ * The gradient magnitudes (real part) and a 0/1 "sample counts" mask (imaginary
+ * part) are transformed together, so a single inverse FFT per radius yields both
+ * the ring sum and the number of valid samples behind it. That count drives the
+ * same mean and border coverage penalty as {@code calculateDaugmanScore}.
+ *
+ * The transform only covers the pixels a ring centered in the window can reach, so
+ * at the default window it is the working width rather than twice that. The image
+ * is transformed once per search, and kernel spectra depend only on the transform
+ * size and radius, so they are cached across searches.
+ *
+ * Ring offsets come from the same angle tables as the scalar score, so scores agree
+ * up to FFT rounding (and, at a few exactly axis-aligned angles, the one-pixel
+ * truncation quirks of the scalar sampler).
+ */
+final class RingConvolutionSearch {
+
+    private static final int COARSE_STEP = 8;
+
+    /**
+     * Upper bound on the memory held by cached kernel spectra, from the
+     * {@code iris.fft.cacheMb} system property (default 128). Spectra past the limit
+     * are computed per search instead of cached.
+     */
+    private static final long CACHE_LIMIT_BYTES = Long.getLong("iris.fft.cacheMb", 128) << 20;
+
+    /** Kernel spectra keyed by transform size and radius; see {@link #kernelSpectrum}. */
+    private static final Map<Long, float[]> SPECTRA = new ConcurrentHashMap<>();
+    private static final AtomicLong cachedBytes = new AtomicLong();
+
+    private RingConvolutionSearch() {}
+
+    /**
+     * Searches the window once per radius range in {@code radiusRanges} ({min, max}
+     * pairs). Overlapping ranges share the per-radius correlation, so the pupil and
+     * iris searches cost little more than the larger of the two.
+     */
+    static CandidateSearch.Result[] search(GradientField gradients, int minX, int maxX, int minY, int maxY,
+                                           int[][] radiusRanges, long deadlineNanos) {
+        int minRadius = Integer.MAX_VALUE;
+        int maxRadius = Integer.MIN_VALUE;
+        for (int[] range : radiusRanges) {
+            minRadius = Math.min(minRadius, range[0]);
+            maxRadius = Math.max(maxRadius, range[1]);
+        }
+
+        // Only pixels a ring centered in the window reaches matter, and of those only
+        // the ones the scalar score counts: inside [2, width - 3]
+        int width = gradients.width;
+        int dataMinX = Math.max(2, minX - maxRadius);
+        int dataMaxX = Math.min(width - 3, maxX + maxRadius);
+        int dataMinY = Math.max(2, minY - maxRadius);
+        int dataMaxY = Math.min(width - 3, maxY + maxRadius);
+
+        int n = Fft.nextPowerOfTwo(Math.max(
+                transformSpan(minX, maxX, dataMinX, dataMaxX, maxRadius),
+                transformSpan(minY, maxY, dataMinY, dataMaxY, maxRadius)));
+        Fft fft = new Fft(n);
+        double norm = (double) n * n;
+        int spanX = maxX - minX + 1;
+        int centersPerRadius = spanX * (maxY - minY + 1);
+
+        CandidateSearch.Result[] results = new CandidateSearch.Result[radiusRanges.length];
+        long[] bestIndex = new long[radiusRanges.length];
+        for (int k = 0; k < radiusRanges.length; k++) {
+            CandidateSearch.Result result = new CandidateSearch.Result();
+            result.centerX = (minX + maxX) / 2;
+            result.centerY = (minY + maxY) / 2;
+            result.radius = radiusRanges[k][0];
+            result.total = CandidateSearch.candidateCount(minX, maxX, minY, maxY,
+                                                          radiusRanges[k][0], radiusRanges[k][1]);
+            results[k] = result;
+            bestIndex[k] = Long.MAX_VALUE;
+        }
+
+        // Gradient magnitudes and sample counts, with pixel (dataMinX, dataMinY) at index 0.
+        // Transformed once and shared by every radius.
+        if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+            return results;
+        }
+        double[] imageRe = new double[n * n];
+        double[] imageIm = new double[n * n];
+        boolean[] imageRows = new boolean[n];
+        for (int y = dataMinY; y <= dataMaxY; y++) {
+            int row = (y - dataMinY) * n;
+            imageRows[y - dataMinY] = true;
+            for (int x = dataMinX; x <= dataMaxX; x++) {
+                double gradient = gradients.magnitude[y * width + x];
+                if (gradient > 0) {
+                    imageRe[row + x - dataMinX] = gradient;
+                    imageIm[row + x - dataMinX] = 1;
+                }
+            }
+        }
+        if (!forward(fft, imageRe, imageIm, imageRows, deadlineNanos)) {
+            return results;
+        }
+
+        // Correlation output for center (cx, cy) lands at index (cy - dataMinY, cx - dataMinX), mod n
+        int[] outputRows = new int[maxY - minY + 1];
+        for (int cy = minY; cy <= maxY; cy++) {
+            outputRows[cy - minY] = Math.floorMod(cy - dataMinY, n);
+        }
+
+        double[] re = new double[n * n];
+        double[] im = new double[n * n];
+        int half = n / 2;
+        int reference = width / 2;
+        int samples = IrisSegmentation.ringOffsets(reference, minRadius).length / 2;
+
+        for (int r : coarseFirstRadii(minRadius, maxRadius)) {
+            // The transforms check the deadline line by line, so a cold kernel cache or a
+            // large window cannot overrun it by a whole radius
+            float[] kernel = kernelSpectrum(fft, reference, r, deadlineNanos);
+            if (kernel == null) {
+                return results;
+            }
+
+            // Multiply by the kernel spectrum; rows past n/2 are the conjugates of the stored ones
+            for (int v = 0; v < n; v++) {
+                boolean stored = v <= half;
+                int kernelRow = (stored ? v : n - v) * n;
+                for (int u = 0; u < n; u++) {
+                    int k = 2 * (kernelRow + (stored ? u : (n - u) & (n - 1)));
+                    double kr = kernel[k];
+                    double ki = stored ? kernel[k + 1] : -kernel[k + 1];
+                    int i = v * n + u;
+                    re[i] = imageRe[i] * kr - imageIm[i] * ki;
+                    im[i] = imageRe[i] * ki + imageIm[i] * kr;
+                }
+            }
+            if (!inverse(fft, re, im, outputRows, deadlineNanos)) {
+                return results;
+            }
+
+            for (int k = 0; k < radiusRanges.length; k++) {
+                if (r < radiusRanges[k][0] || r > radiusRanges[k][1]) {
+                    continue;
+                }
+                CandidateSearch.Result result = results[k];
+                int spanR = radiusRanges[k][1] - radiusRanges[k][0] + 1;
+
+                for (int cy = minY; cy <= maxY; cy++) {
+                    int row = outputRows[cy - minY] * n;
+                    for (int cx = minX; cx <= maxX; cx++) {
+                        int i = row + Math.floorMod(cx - dataMinX, n);
+                        double sum = re[i] / norm;
+                        long validPoints = Math.round(im[i] / norm);
+
+                        double score = 0;
+                        if (validPoints > 0) {
+                            score = sum / validPoints;
+
+                            double coverageRatio = (double) validPoints / samples;
+                            if (coverageRatio < 0.75) {
+                                score *= coverageRatio;
+                            }
+                        }
+
+                        long index = ((long) (cy - minY) * spanX + (cx - minX)) * spanR
+                                   + (r - radiusRanges[k][0]);
+                        if (score > result.score || (score == result.score && index < bestIndex[k])) {
+                            result.score = score;
+                            result.centerX = cx;
+                            result.centerY = cy;
+                            result.radius = r;
+                            bestIndex[k] = index;
+                        }
+                    }
+                }
+                result.evaluated += centersPerRadius;
+            }
+        }
+
+        for (CandidateSearch.Result result : results) {
+            result.completed = true;
+        }
+        return results;
+    }
+
+    /**
+     * Smallest circular transform length along one axis that keeps every ring sample
+     * from wrapping onto pixel data. Centers run over [min, max] and read up to
+     * {@code maxRadius} either side; the data starts at index 0 of the transform.
+     */
+    private static int transformSpan(int min, int max, int dataMin, int dataMax, int maxRadius) {
+        int lowestRead = min - maxRadius;
+        int highestRead = max + maxRadius;
+        return Math.max(max - min + 1, Math.max(dataMax - lowestRead + 1, highestRead - dataMin + 1));
+    }
+
+    /**
+     * Spectrum of the ring of radius {@code r}, with each sample at minus its offset so
+     * that multiplying correlates. The kernel is real, so only rows 0 to n/2 are kept
+     * (interleaved re, im floats); the rest are their conjugates. Cached until the
+     * cache reaches {@link #CACHE_LIMIT_BYTES}. Returns null if the deadline passes
+     * before it is computed.
+     */
+    private static float[] kernelSpectrum(Fft fft, int reference, int r, long deadlineNanos) {
+        int n = fft.size;
+        long key = (long) n << 42 | (long) reference << 21 | r;
+        float[] spectrum = SPECTRA.get(key);
+        if (spectrum != null) {
+            return spectrum;
+        }
+
+        double[] re = new double[n * n];
+        double[] im = new double[n * n];
+        boolean[] rows = new boolean[n];
+        int[] offsets = IrisSegmentation.ringOffsets(reference, r);
+        for (int i = 0; i < offsets.length; i += 2) {
+            int row = -offsets[i + 1] & (n - 1);
+            int col = -offsets[i] & (n - 1);
+            re[row * n + col] += 1;
+            rows[row] = true;
+        }
+        if (!forward(fft, re, im, rows, deadlineNanos)) {
+            return null;
+        }
+
+        spectrum = new float[2 * (n / 2 + 1) * n];
+        for (int i = 0; i < spectrum.length / 2; i++) {
+            spectrum[2 * i] = (float) re[i];
+            spectrum[2 * i + 1] = (float) im[i];
+        }
+
+        long bytes = 4L * spectrum.length;
+        if (cachedBytes.addAndGet(bytes) <= CACHE_LIMIT_BYTES) {
+            float[] raced = SPECTRA.putIfAbsent(key, spectrum);
+            if (raced != null) {
+                cachedBytes.addAndGet(-bytes);
+                return raced;
+            }
+        } else {
+            cachedBytes.addAndGet(-bytes);
+        }
+        return spectrum;
+    }
+
+    /** Radii in passes of stride 8, 4, 2, 1 so an interrupted search still spans the range. */
+    private static int[] coarseFirstRadii(int minRadius, int maxRadius) {
+        int[] radii = new int[maxRadius - minRadius + 1];
+        boolean[] taken = new boolean[radii.length];
+        int count = 0;
+        for (int step = COARSE_STEP; step >= 1; step /= 2) {
+            for (int i = 0; i < radii.length; i += step) {
+                if (!taken[i]) {
+                    taken[i] = true;
+                    radii[count++] = minRadius + i;
+                }
+            }
+        }
+        return radii;
+    }
+
+    /**
+     * Forward 2D transform; rows flagged as all-zero are skipped in the row pass.
+     * Returns false, leaving the arrays part-transformed, if the deadline passes first.
+     */
+    private static boolean forward(Fft fft, double[] re, double[] im, boolean[] nonZeroRows,
+                                   long deadlineNanos) {
+        int n = fft.size;
+        double[] lineRe = new double[n];
+        double[] lineIm = new double[n];
+
+        for (int y = 0; y < n; y++) {
+            if (nonZeroRows[y]) {
+                if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+                    return false;
+                }
+                transformRow(fft, re, im, y, lineRe, lineIm, false);
+            }
+        }
+        for (int x = 0; x < n; x++) {
+            if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+                return false;
+            }
+            transformColumn(fft, re, im, x, lineRe, lineIm, false);
+        }
+        return true;
+    }
+
+    /**
+     * Inverse 2D transform, finishing the row pass only for the rows the caller reads.
+     * Returns false if the deadline passes first, like {@link #forward}.
+     */
+    private static boolean inverse(Fft fft, double[] re, double[] im, int[] rows, long deadlineNanos) {
+        int n = fft.size;
+        double[] lineRe = new double[n];
+        double[] lineIm = new double[n];
+
+        for (int x = 0; x < n; x++) {
+            if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+                return false;
+            }
+            transformColumn(fft, re, im, x, lineRe, lineIm, true);
+        }
+        for (int y : rows) {
+            if (IrisSegmentation.deadlinePassed(deadlineNanos)) {
+                return false;
+            }
+            transformRow(fft, re, im, y, lineRe, lineIm, true);
+        }
+        return true;
+    }
+
+    private static void transformRow(Fft fft, double[] re, double[] im, int y,
+                                     double[] lineRe, double[] lineIm, boolean inverse) {
+        int n = fft.size;
+        System.arraycopy(re, y * n, lineRe, 0, n);
+        System.arraycopy(im, y * n, lineIm, 0, n);
+        fft.transform(lineRe, lineIm, inverse);
+        System.arraycopy(lineRe, 0, re, y * n, n);
+        System.arraycopy(lineIm, 0, im, y * n, n);
+    }
+
+    private static void transformColumn(Fft fft, double[] re, double[] im, int x,
+                                        double[] lineRe, double[] lineIm, boolean inverse) {
+        int n = fft.size;
+        for (int y = 0; y < n; y++) {
+            lineRe[y] = re[y * n + x];
+            lineIm[y] = im[y * n + x];
+        }
+        fft.transform(lineRe, lineIm, inverse);
+        for (int y = 0; y < n; y++) {
+            re[y * n + x] = lineRe[y];
+            im[y * n + x] = lineIm[y];
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
+
+/**
+ * Optional region-of-interest hints, in source image pixels. Sent as a nested
+ * "hints" object to /process-base64 and as plain form fields to /process-file,
+ * by both {@link IrisWebController} and {@link EmbeddedServer}.
+ */
+public class SearchHintsRequest {
+    private Integer cropX;
+    private Integer cropY;
+    private Integer cropWidth;
+    private Integer cropHeight;
+    private Double pupilX;
+    private Double pupilY;
+    private Double centerTolerance;
+    private Double pupilMinRadius;
+    private Double pupilMaxRadius;
+    private Double irisMinRadius;
+    private Double irisMaxRadius;
+
+    public SearchHintsRequest() {}
+
+    public Integer getCropX() { return cropX; }
+    public void setCropX(Integer cropX) { this.cropX = cropX; }
+    public Integer getCropY() { return cropY; }
+    public void setCropY(Integer cropY) { this.cropY = cropY; }
+    public Integer getCropWidth() { return cropWidth; }
+    public void setCropWidth(Integer cropWidth) { this.cropWidth = cropWidth; }
+    public Integer getCropHeight() { return cropHeight; }
+    public void setCropHeight(Integer cropHeight) { this.cropHeight = cropHeight; }
+    public Double getPupilX() { return pupilX; }
+    public void setPupilX(Double pupilX) { this.pupilX = pupilX; }
+    public Double getPupilY() { return pupilY; }
+    public void setPupilY(Double pupilY) { this.pupilY = pupilY; }
+    public Double getCenterTolerance() { return centerTolerance; }
+    public void setCenterTolerance(Double centerTolerance) { this.centerTolerance = centerTolerance; }
+    public Double getPupilMinRadius() { return pupilMinRadius; }
+    public void setPupilMinRadius(Double pupilMinRadius) { this.pupilMinRadius = pupilMinRadius; }
+    public Double getPupilMaxRadius() { return pupilMaxRadius; }
+    public void setPupilMaxRadius(Double pupilMaxRadius) { this.pupilMaxRadius = pupilMaxRadius; }
+    public Double getIrisMinRadius() { return irisMinRadius; }
+    public void setIrisMinRadius(Double irisMinRadius) { this.irisMinRadius = irisMinRadius; }
+    public Double getIrisMaxRadius() { return irisMaxRadius; }
+    public void setIrisMaxRadius(Double irisMaxRadius) { this.irisMaxRadius = irisMaxRadius; }
+
+    /**
+     * Converts to segmentation hints; returns null when no hint is set and throws
+     * IllegalArgumentException for incomplete or inconsistent hints.
+     */
+    IrisSegmentation.SearchHints toSearchHints() {
+        IrisSegmentation.SearchHints hints = new IrisSegmentation.SearchHints();
+        boolean any = false;
+
+        if (cropX != null || cropY != null || cropWidth != null || cropHeight != null) {
+            if (cropX == null || cropY == null || cropWidth == null || cropHeight == null) {
+                throw new IllegalArgumentException("Crop needs cropX, cropY, cropWidth and cropHeight");
+            }
+            hints.crop = new Rectangle(cropX, cropY, cropWidth, cropHeight);
+            any = true;
+        }
+        if (pupilX != null || pupilY != null) {
+            if (pupilX == null || pupilY == null) {
+                throw new IllegalArgumentException("Pupil center needs both pupilX and pupilY");
+            }
+            hints.pupilCenter = new Point2D.Double(pupilX, pupilY);
+            any = true;
+        }
+        if (centerTolerance != null) {
+            hints.centerTolerance = centerTolerance;
+            any = true;
+        }
+        if (pupilMinRadius != null || pupilMaxRadius != null) {
+            hints.pupilMinRadius = pupilMinRadius == null ? 1 : pupilMinRadius;
+            hints.pupilMaxRadius = pupilMaxRadius == null ? 0 : pupilMaxRadius;
+            any = true;
+        }
+        if (irisMinRadius != null || irisMaxRadius != null) {
+            hints.irisMinRadius = irisMinRadius == null ? 1 : irisMinRadius;
+            hints.irisMaxRadius = irisMaxRadius == null ? 0 : irisMaxRadius;
+            any = true;
+        }
+
+        if (!any) {
+            return null;
+        }
+        hints.validate();
+        return hints;
+    }
+}
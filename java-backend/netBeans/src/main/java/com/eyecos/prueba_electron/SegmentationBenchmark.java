@@ -0,0 +1,153 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+import com.eyecos.prueba_electron.IrisSegmentation.SearchMode;
+import com.eyecos.prueba_electron.IrisSegmentation.SegmentationOptions;
+
+/**
+ * Runs every segmentation engine over the same images and prints their timings
+ * and answers side by side.
+ *
+ * Usage:
+ *   java -cp prueba_electron-1.0.0-cli.jar com.eyecos.prueba_electron.SegmentationBenchmark
+ *        [--images=DIR] [--count=N] [--size=PX] [--resolution=PX]
+ *
+ * Without --images it renders N synthetic eyes of the given size and also reports
+ * each engine's error against the known circles.
+ */
+public class SegmentationBenchmark {
+
+    private static class Config {
+        final String label;
+        final SegmentationOptions options;
+
+        Config(String label, SegmentationEngine engine, SearchMode mode, boolean seedPupil) {
+            this.label = label;
+            this.options = new SegmentationOptions();
+            this.options.engine = engine;
+            this.options.searchMode = mode;
+            this.options.seedPupil = seedPupil;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String imageDir = null;
+        int count = 5;
+        int size = 640;
+        int resolution = 256;
+
+        for (String arg : args) {
+            if (arg.startsWith("--images=")) {
+                imageDir = arg.substring("--images=".length());
+            } else if (arg.startsWith("--count=")) {
+                count = Integer.parseInt(arg.substring("--count=".length()));
+            } else if (arg.startsWith("--size=")) {
+                size = Integer.parseInt(arg.substring("--size=".length()));
+            } else if (arg.startsWith("--resolution=")) {
+                resolution = Integer.parseInt(arg.substring("--resolution=".length()));
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + arg);
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<BufferedImage> images = new ArrayList<>();
+        List<IrisData> truths = new ArrayList<>();
+        if (imageDir != null) {
+            File[] files = new File(imageDir).listFiles();
+            if (files == null) {
+                throw new IllegalArgumentException("Not a directory: " + imageDir);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                BufferedImage image = ImageIO.read(file);
+                if (image != null) {
+                    names.add(file.getName());
+                    images.add(image);
+                    truths.add(null);
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                SyntheticEye.Sample sample = SyntheticEye.render(size, i);
+                names.add("synthetic-" + i);
+                images.add(sample.image);
+                truths.add(sample.truth);
+            }
+        }
+
+        List<Config> configs = new ArrayList<>();
+        for (SegmentationEngine engine : SegmentationEngine.available()) {
+            if (engine instanceof DaugmanEngine) {
+                for (SearchMode mode : SearchMode.values()) {
+                    String label = engine.name() + "/" + mode.name().toLowerCase();
+                    configs.add(new Config(label, engine, mode, false));
+                    if (mode != SearchMode.FFT) {
+                        configs.add(new Config(label + "+seed", engine, mode, true));
+                    }
+                }
+            } else {
+                configs.add(new Config(engine.name(), engine, SearchMode.EXHAUSTIVE, false));
+            }
+        }
+
+        System.out.println("Segmentation benchmark: " + images.size() + " images at working resolution "
+                + resolution);
+        System.out.printf("%-24s %10s %10s %12s %12s%n",
+                "engine", "mean ms", "max ms", "pupil err", "iris err");
+
+        for (Config config : configs) {
+            // One untimed run so JIT compilation does not land in the first sample
+            IrisSegmentation.segmentIris(images.get(0), resolution, config.options);
+
+            double totalMillis = 0;
+            double maxMillis = 0;
+            double pupilError = 0;
+            double irisError = 0;
+            StringBuilder details = new StringBuilder();
+
+            for (int i = 0; i < images.size(); i++) {
+                long start = System.nanoTime();
+                IrisData result = IrisSegmentation.segmentIris(images.get(i), resolution, config.options);
+                double millis = (System.nanoTime() - start) / 1e6;
+                totalMillis += millis;
+                maxMillis = Math.max(maxMillis, millis);
+
+                details.append(String.format("    %-16s pupil (%.1f, %.1f) r=%.1f  iris (%.1f, %.1f) r=%.1f  %.0f ms%n",
+                        names.get(i),
+                        result.precisePupilCenterX, result.precisePupilCenterY, result.precisePupilRadius,
+                        result.preciseIrisCenterX, result.preciseIrisCenterY, result.preciseIrisRadius,
+                        millis));
+
+                IrisData truth = truths.get(i);
+                if (truth != null) {
+                    pupilError += circleError(result.precisePupilCenterX, result.precisePupilCenterY,
+                            result.precisePupilRadius, truth.precisePupilCenterX, truth.precisePupilCenterY,
+                            truth.precisePupilRadius);
+                    irisError += circleError(result.preciseIrisCenterX, result.preciseIrisCenterY,
+                            result.preciseIrisRadius, truth.preciseIrisCenterX, truth.preciseIrisCenterY,
+                            truth.preciseIrisRadius);
+                }
+            }
+
+            boolean synthetic = truths.get(0) != null;
+            System.out.printf("%-24s %10.1f %10.1f %12s %12s%n",
+                    config.label, totalMillis / images.size(), maxMillis,
+                    synthetic ? String.format("%.2f px", pupilError / images.size()) : "-",
+                    synthetic ? String.format("%.2f px", irisError / images.size()) : "-");
+            System.out.print(details);
+        }
+    }
+
+    /** Center distance plus absolute radius difference, in original image pixels. */
+    private static double circleError(double x, double y, double r, double tx, double ty, double tr) {
+        return Math.hypot(x - tx, y - ty) + Math.abs(r - tr);
+    }
+}
@@ -0,0 +1,67 @@
+package com.eyecos.prueba_electron;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.eyecos.prueba_electron.IrisSegmentation.SearchRegion;
+import com.eyecos.prueba_electron.IrisSegmentation.SegmentationOptions;
+
+/**
+ * Strategy for locating the pupil and iris circles on the working image.
+ *
+ * Engines receive the blurred square grayscale buffer built by
+ * {@link IrisSegmentation#segmentIris} and return circles in working-image
+ * coordinates. Scaling back to the original image and sub-pixel refinement
+ * stay in {@link IrisSegmentation}, so every engine gets them for free.
+ */
+public interface SegmentationEngine {
+
+    /** Deadline value meaning "run to completion". */
+    long NO_DEADLINE = Long.MAX_VALUE;
+
+    String name();
+
+    /**
+     * @param deadlineNanos a {@link System#nanoTime()} value after which the engine
+     *                      should return its best answer so far, or {@link #NO_DEADLINE}
+     */
+    Circles findCircles(byte[] blurredPixels, int width, SearchRegion region,
+                        SegmentationOptions options, long deadlineNanos);
+
+    /** Pupil and iris as {centerX, centerY, radius} in working-image coordinates. */
+    class Circles {
+        public int[] pupil;
+        public int[] iris;
+        public boolean completed = true;
+        public double coverage = 1.0;
+        /** False when the deadline passed before any candidate was scored; the circles are placeholders then. */
+        public boolean found = true;
+
+        public Circles(int[] pupil, int[] iris) {
+            this.pupil = pupil;
+            this.iris = iris;
+        }
+
+        /** The answer for a deadline that passed before the search could start. */
+        public static Circles notFound(double coverage) {
+            Circles circles = new Circles(new int[3], new int[3]);
+            circles.completed = false;
+            circles.coverage = coverage;
+            circles.found = false;
+            return circles;
+        }
+    }
+
+    static List<SegmentationEngine> available() {
+        return Arrays.asList(new DaugmanEngine(), new HoughVotingEngine());
+    }
+
+    static SegmentationEngine forName(String name) {
+        for (SegmentationEngine engine : available()) {
+            if (engine.name().equalsIgnoreCase(name)) {
+                return engine;
+            }
+        }
+        throw new IllegalArgumentException("Unknown segmentation engine: " + name);
+    }
+}
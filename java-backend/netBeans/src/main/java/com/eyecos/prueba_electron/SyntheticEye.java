@@ -0,0 +1,102 @@
+package com.eyecos.prueba_electron;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import com.eyecos.prueba_electron.IrisSegmentation.IrisData;
+
+/**
+ * Renders simple eye-like test images with known pupil and iris circles:
+ * a bright sclera, a textured iris, a dark pupil, upper lashes, a specular
+ * highlight and sensor noise. There is enough texture and contrast to pass
+ * {@link EyeDetector}. Used by the benchmarks and for warming up the
+ * segmentation code.
+ */
+public class SyntheticEye {
+
+    public static class Sample {
+        public final BufferedImage image;
+        public final IrisData truth;
+
+        Sample(BufferedImage image, IrisData truth) {
+            this.image = image;
+            this.truth = truth;
+        }
+    }
+
+    /**
+     * Thin dark strokes fanning out above the iris, standing in for eyelashes.
+     */
+    private static boolean isLash(int x, int y, double irisX, double irisY, double irisRadius) {
+        double dx = x + 0.5 - irisX;
+        double dy = y + 0.5 - irisY;
+        double distance = Math.hypot(dx, dy);
+        if (dy > -irisRadius * 0.6 || distance < irisRadius * 1.25 || distance > irisRadius * 1.9) {
+            return false;
+        }
+        double angle = Math.atan2(dy, dx);
+        double phase = angle * 40 / Math.PI;
+        return Math.abs(phase - Math.rint(phase)) < 0.12;
+    }
+
+    /**
+     * Renders a square image of the given size. Circle sizes and positions vary with
+     * the seed but stay inside the default segmentation search region.
+     */
+    public static Sample render(int size, long seed) {
+        Random random = new Random(seed);
+
+        double irisRadius = size * (0.17 + 0.06 * random.nextDouble());
+        double pupilRadius = irisRadius * (0.45 + 0.15 * random.nextDouble());
+        double irisX = size / 2.0 + (random.nextDouble() - 0.5) * size * 0.1;
+        double irisY = size / 2.0 + (random.nextDouble() - 0.5) * size * 0.1;
+        double pupilX = irisX + (random.nextDouble() - 0.5) * irisRadius * 0.1;
+        double pupilY = irisY + (random.nextDouble() - 0.5) * irisRadius * 0.1;
+
+        int irisTone = 55 + random.nextInt(45);
+        double[] spokes = new double[32];
+        for (int i = 0; i < spokes.length; i++) {
+            spokes[i] = random.nextDouble();
+        }
+        double glintX = pupilX + pupilRadius * 0.4;
+        double glintY = pupilY - pupilRadius * 0.4;
+        double glintRadius = Math.max(1.5, pupilRadius * 0.12);
+
+        int[] rgb = new int[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                double dpx = x + 0.5 - pupilX;
+                double dpy = y + 0.5 - pupilY;
+                double dix = x + 0.5 - irisX;
+                double diy = y + 0.5 - irisY;
+
+                double value;
+                if (dpx * dpx + dpy * dpy <= pupilRadius * pupilRadius) {
+                    value = 18;
+                } else if (dix * dix + diy * diy <= irisRadius * irisRadius) {
+                    double angle = Math.atan2(diy, dix) + Math.PI;
+                    double spoke = spokes[(int) (angle / (2 * Math.PI) * spokes.length) % spokes.length];
+                    value = irisTone + 30 * (spoke - 0.5) + random.nextGaussian() * 18;
+                } else if (isLash(x, y, irisX, irisY, irisRadius)) {
+                    value = 150;
+                } else {
+                    value = 215 - 40.0 * Math.abs(y - size / 2.0) / size;
+                }
+
+                double dgx = x + 0.5 - glintX;
+                double dgy = y + 0.5 - glintY;
+                if (dgx * dgx + dgy * dgy <= glintRadius * glintRadius) {
+                    value = 250;
+                }
+
+                int v = (int) Math.max(0, Math.min(255, value + random.nextGaussian() * 4));
+                rgb[y * size + x] = (v << 16) | (v << 8) | v;
+            }
+        }
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, size, size, rgb, 0, size);
+
+        return new Sample(image, new IrisData(pupilX, pupilY, pupilRadius, irisX, irisY, irisRadius));
+    }
+}
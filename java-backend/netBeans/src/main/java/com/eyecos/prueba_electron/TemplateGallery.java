@@ -0,0 +1,30 @@
+package com.eyecos.prueba_electron;
+
+import java.util.Map;
+
+import com.eyecos.prueba_electron.IrisMatcher.IdentifyResult;
+import com.eyecos.prueba_electron.IrisMatcher.MatchOptions;
+
+/**
+ * Store of enrolled iris templates that can be searched 1:N.
+ *
+ * Each subject id holds at most one template; enrolling an existing id replaces
+ * its template. Implementations must allow identification to run concurrently
+ * with other identifications.
+ */
+public interface TemplateGallery {
+
+    void enroll(String subjectId, IrisCode code);
+
+    /** Enrolls several subjects; implementations may batch the work. */
+    default void enrollAll(Map<String, IrisCode> templates) {
+        templates.forEach(this::enroll);
+    }
+
+    /** Returns false if the subject was not enrolled. */
+    boolean remove(String subjectId);
+
+    int size();
+
+    IdentifyResult identify(IrisCode probe, MatchOptions options);
+}